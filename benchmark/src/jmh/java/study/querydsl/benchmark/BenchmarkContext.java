@@ -0,0 +1,88 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/*벤치마크용 스프링 컨텍스트
+ * 임베디드 H2(메모리)에 rowCount만큼 회원을 넣어두고 포크당 한번만 띄운다.
+ * local 프로파일이 아니라서 initMember 샘플 데이터는 들어가지 않는다.*/
+@State(Scope.Benchmark)
+public class BenchmarkContext {
+
+    @Param({"1000", "100000"})
+    public int rowCount;
+
+    public ConfigurableApplicationContext context;
+    public MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        /*application.yml보다 우선하도록 커맨드라인 인자로 넘긴다.
+        * 검색 결과 캐시/동시 요청 합치기는 끈다. 켜두면 같은 조건을 반복하는 검색 벤치마크가
+        * 쿼리 실행이 아니라 캐시 히트를 재게 된다.*/
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--decorator.datasource.p6spy.enable-logging=false",
+                        "--querydsl.search-cache.enabled=false",
+                        "--querydsl.search-coalescing.enabled=false",
+                        "--logging.level.org.hibernate.SQL=warn");
+        seed();
+
+        condition = new MemberSearchCondition();
+        condition.setTeamname("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    /*팀 10개에 회원을 나눠 넣고 1000건마다 flush/clear*/
+    private void seed() {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        tx.executeWithoutResult(status -> {
+            Team[] teams = new Team[10];
+            for (int i = 0; i < teams.length; i++) {
+                teams[i] = new Team("team" + i);
+                em.persist(teams[i]);
+            }
+            for (int i = 0; i < rowCount; i++) {
+                /*changeTeam은 team.members 컬렉션을 로딩하니 연관관계 주인 쪽만 세팅한다.*/
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(em.getReference(Team.class, teams[i % teams.length].getId()));
+                em.persist(member);
+                if (i % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+        });
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,100 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/*Member.changeTeam 비용이 팀 크기와 관계없이 일정한지 확인
+ * teamSize명이 있는 큰 팀으로
+ *  - 다른 팀 회원을 옮기거나 (moveToLargeTeam)
+ *  - 새 회원을 넣는다. (joinLargeTeam)
+ * 매번 flush까지 하고 롤백해서 데이터는 그대로 유지한다.
+ * team.members를 로딩했다면 teamSize에 비례해서 느려져야 한다.
+ *
+ * ./gradlew :benchmark:jmh -PjmhIncludes=ChangeTeamBenchmark*/
+@State(Scope.Benchmark)
+public class ChangeTeamBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int teamSize;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager em;
+    private TransactionTemplate tx;
+    private Long largeTeamId;
+    private Long moverId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:changeTeam;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--decorator.datasource.p6spy.enable-logging=false",
+                        "--logging.level.org.hibernate.SQL=warn");
+        em = context.getBean(EntityManager.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        tx.executeWithoutResult(status -> {
+            Team largeTeam = new Team("large");
+            Team smallTeam = new Team("small");
+            em.persist(largeTeam);
+            em.persist(smallTeam);
+            for (int i = 0; i < teamSize; i++) {
+                Member member = new Member("member" + i, i % 100);
+                member.setTeam(largeTeam);
+                em.persist(member);
+                if (i % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                    largeTeam = em.getReference(Team.class, largeTeam.getId());
+                }
+            }
+            Member mover = new Member("mover", 10);
+            mover.setTeam(em.getReference(Team.class, smallTeam.getId()));
+            em.persist(mover);
+            largeTeamId = largeTeam.getId();
+            moverId = mover.getId();
+        });
+    }
+
+    @Benchmark
+    public void moveToLargeTeam() {
+        tx.executeWithoutResult(status -> {
+            Member mover = em.find(Member.class, moverId);
+            mover.changeTeam(em.find(Team.class, largeTeamId));
+            em.flush();
+            status.setRollbackOnly();
+        });
+    }
+
+    @Benchmark
+    public void joinLargeTeam() {
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("newbie", 20, em.find(Team.class, largeTeamId)));
+            em.flush();
+            status.setRollbackOnly();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
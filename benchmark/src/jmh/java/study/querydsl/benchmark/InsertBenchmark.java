@@ -0,0 +1,86 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJpaRepository;
+
+/*MemberJpaRepository.save 경로의 insert 처리량
+ * allocationSize=1 이 예전처럼 회원마다 시퀀스를 한번씩 부르는 경우(before)이고
+ * 50/500은 pooled-lo 옵티마이저로 시퀀스 호출을 할당 크기만큼 줄인 경우(after)다.
+ * 옵티마이저는 PooledSequenceGenerator가 pooled-lo로 고정해서 파라미터로 두지 않는다.
+ * 한번 호출에 BATCH명을 save하고 flush/clear하므로 결과는 회원 1명당 처리량이다.
+ *
+ * ./gradlew :benchmark:jmh -PjmhIncludes=InsertBenchmark*/
+@State(Scope.Benchmark)
+public class InsertBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"1", "50", "500"})
+    public int allocationSize;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private EntityManager em;
+    private TransactionTemplate tx;
+    private Long teamId;
+    private int sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--spring.profiles.active=bench",
+                        "--spring.datasource.url=jdbc:h2:mem:insert;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.properties.hibernate.format_sql=false",
+                        "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                        "--spring.jpa.properties.querydsl.id.allocation-size=" + allocationSize,
+                        "--decorator.datasource.p6spy.enable-logging=false",
+                        "--logging.level.org.hibernate.SQL=warn");
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        em = context.getBean(EntityManager.class);
+        tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        teamId = tx.execute(status -> {
+            Team team = new Team("teamA");
+            em.persist(team);
+            return team.getId();
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void save() {
+        tx.executeWithoutResult(status -> {
+            Team team = em.getReference(Team.class, teamId);
+            for (int i = 0; i < BATCH; i++) {
+                Member member = new Member("member" + sequence++, i % 100);
+                member.setTeam(team);
+                memberJpaRepository.save(member);
+            }
+            em.flush();
+            em.clear();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
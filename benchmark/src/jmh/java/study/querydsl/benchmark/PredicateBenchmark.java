@@ -0,0 +1,93 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberTeamDto;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/*DB 없이 쿼리 조립 비용만 비교
+ * - BooleanBuilder 방식 (MemberJpaRepository.searchByBuilder)
+ * - where절 파라미터 방식 (search / MemberQueryRepository / MemberRepositoryImpl)
+ * 조건식 생성과 JPQL 직렬화(toString)를 따로 잰다.
+ * JPAQuery()는 EntityManager 없이 만들 수 있어서 직렬화만 떼어서 볼 수 있다.*/
+@State(Scope.Thread)
+public class PredicateBenchmark {
+
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp() {
+        condition = new MemberSearchCondition();
+        condition.setTeamname("team3");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @Benchmark
+    public BooleanBuilder predicateBooleanBuilder() {
+        return builder(condition);
+    }
+
+    @Benchmark
+    public BooleanExpression[] predicateWhereParams() {
+        return whereParams(condition);
+    }
+
+    @Benchmark
+    public String serializeBooleanBuilder() {
+        return searchQuery().where(builder(condition)).toString();
+    }
+
+    @Benchmark
+    public String serializeWhereParams() {
+        return searchQuery().where(whereParams(condition)).toString();
+    }
+
+    private JPAQuery<?> searchQuery() {
+        return new JPAQuery<Void>()
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")
+                ))
+                .from(member)
+                .leftJoin(member.team, team);
+    }
+
+    private BooleanBuilder builder(MemberSearchCondition condition) {
+        BooleanBuilder builder = new BooleanBuilder();
+        if (hasText(condition.getUsername())) {
+            builder.and(member.username.eq(condition.getUsername()));
+        }
+        if (hasText(condition.getTeamname())) {
+            builder.and(team.name.eq(condition.getTeamname()));
+        }
+        if (condition.getAgeGoe() != null) {
+            builder.and(member.age.goe(condition.getAgeGoe()));
+        }
+        if (condition.getAgeLoe() != null) {
+            builder.and(member.age.loe(condition.getAgeLoe()));
+        }
+        return builder;
+    }
+
+    private BooleanExpression[] whereParams(MemberSearchCondition condition) {
+        return new BooleanExpression[]{
+                hasText(condition.getUsername()) ? member.username.eq(condition.getUsername()) : null,
+                hasText(condition.getTeamname()) ? team.name.eq(condition.getTeamname()) : null,
+                condition.getAgeGoe() != null ? member.age.goe(condition.getAgeGoe()) : null,
+                condition.getAgeLoe() != null ? member.age.loe(condition.getAgeLoe()) : null
+        };
+    }
+}
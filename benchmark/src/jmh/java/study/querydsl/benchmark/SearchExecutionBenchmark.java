@@ -0,0 +1,56 @@
+package study.querydsl.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberQueryRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.TeamDictionary;
+import study.querydsl.repository.support.SearchCoalescer;
+import study.querydsl.repository.support.SearchResultCache;
+
+import java.util.List;
+
+/*실제 H2에 쿼리를 날리는 end-to-end 비교
+ * 같은 조건으로 4가지 검색 구현을 호출한다.
+ * searchByBuilder는 BooleanBuilder로 매번 쿼리를 조립하고
+ * 나머지 search는 조건 모양별로 미리 직렬화해둔 템플릿에 값만 바인딩한다.*/
+@State(Scope.Thread)
+public class SearchExecutionBenchmark {
+
+    private MemberJpaRepository memberJpaRepository;
+    private MemberQueryRepository memberQueryRepository;
+    private MemberRepository memberRepository;
+
+    @Setup
+    public void setUp(BenchmarkContext ctx) {
+        memberJpaRepository = ctx.bean(MemberJpaRepository.class);
+        memberRepository = ctx.bean(MemberRepository.class);
+        memberQueryRepository = new MemberQueryRepository(ctx.bean(EntityManager.class), ctx.bean(TeamDictionary.class),
+                ctx.bean(SearchResultCache.class), ctx.bean(SearchCoalescer.class));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> jpaRepositorySearchByBuilder(BenchmarkContext ctx) {
+        return memberJpaRepository.searchByBuilder(ctx.condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> jpaRepositorySearch(BenchmarkContext ctx) {
+        return memberJpaRepository.search(ctx.condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> queryRepositorySearch(BenchmarkContext ctx) {
+        return memberQueryRepository.search(ctx.condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> customRepositorySearch(BenchmarkContext ctx) {
+        return memberRepository.search(ctx.condition);
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.LocalCountCache;
+
+import java.time.Duration;
+
+/*카운트 캐시 설정
+ * querydsl.paging.count-cache.enabled=false 로 끄면 매번 카운트 쿼리를 날린다.
+ * 다른 구현체(레디스 등)를 쓰고 싶으면 CountCache 빈만 바꿔 끼우면 된다.*/
+@Configuration
+public class CountCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.paging.count-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public LocalCountCache countCache(@Value("${querydsl.paging.count-cache.ttl:10s}") Duration ttl,
+                                      @Value("${querydsl.paging.count-cache.max-size:1000}") int maxSize) {
+        return new LocalCountCache(ttl, maxSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.paging.count-cache.enabled", havingValue = "false")
+    public CountCache noCountCache() {
+        return CountCache.NONE;
+    }
+}
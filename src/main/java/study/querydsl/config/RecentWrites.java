@@ -0,0 +1,72 @@
+package study.querydsl.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.event.EventListener;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.repository.support.TransactionCallbacks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*이 인스턴스에서 마지막으로 쓴 시점
+ * 쓰기는 주 DB로 가고 복제본에는 복제 지연만큼 늦게 보인다.
+ * 저장 직후의 검색이 복제본으로 가면 방금 쓴 데이터가 안 보이고
+ * 그 결과가 검색/카운트 캐시에 들어가면 TTL 동안 계속 예전 값이 나간다.
+ * (캐시는 변경 이벤트로 비워지지만 비운 직후 복제본에서 다시 예전 값을 채운다)
+ *
+ * 그래서 Member/Team 변경 이벤트가 오면 그 시점과 트랜잭션이 끝난 시점을 기록하고
+ * read-your-writes-window 동안은 읽기 전용 트랜잭션도 주 DB에서 읽게 한다. (ReplicaRoutingConfig)
+ * 그동안 채워지는 캐시도 주 DB 값이라 캐시에서 따로 걸러낼 필요가 없다.
+ * 창은 복제 지연보다 길게 잡는다. 0이면 끄고 항상 복제본에서 읽는다.
+ *
+ * 다른 인스턴스의 쓰기는 알 수 없어서 그쪽 변경은 여전히 복제 지연만큼 늦게 보인다.
+ * 창 안에서는 이 인스턴스의 모든 읽기가 주 DB 커넥션을 쓰니 쓰기가 잦으면 창을 줄인다.
+ * /actuator/metrics/querydsl.datasource.pinned.reads 로 주 DB로 돌린 읽기 수를 확인한다.*/
+public class RecentWrites implements MeterBinder {
+
+    private final long windowNanos;
+    private final AtomicLong lastWrite = new AtomicLong();
+    private final AtomicLong pinnedReads = new AtomicLong();
+    private volatile boolean written;
+
+    public RecentWrites(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        markWritten();
+        TransactionCallbacks.afterCompletionOnce(this, this::markWritten);
+    }
+
+    public void markWritten() {
+        lastWrite.set(System.nanoTime());
+        written = true;
+    }
+
+    /*주 DB에서 읽어야 하면 true, 읽기 수도 같이 센다.*/
+    public boolean pinToPrimary() {
+        if (!isPinned()) {
+            return false;
+        }
+        pinnedReads.incrementAndGet();
+        return true;
+    }
+
+    public boolean isPinned() {
+        return windowNanos > 0 && written && System.nanoTime() - lastWrite.get() < windowNanos;
+    }
+
+    public long getPinnedReads() {
+        return pinnedReads.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.datasource.pinned.reads", pinnedReads, AtomicLong::get)
+                .description("Read-only connections taken from the primary because of a recent local write")
+                .register(registry);
+    }
+}
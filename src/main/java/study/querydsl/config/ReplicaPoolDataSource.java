@@ -0,0 +1,108 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*복제본 커넥션 풀 묶음
+ * 커넥션을 달라고 하면 selection 방식으로 복제본 하나를 골라서 그 풀에서 꺼낸다.
+ * 고른 복제본이 죽어서 커넥션을 못 주면 다음 복제본으로 넘어간다. (주 DB로는 넘기지 않는다)*/
+@Slf4j
+public class ReplicaPoolDataSource extends AbstractDataSource implements Closeable, MeterBinder {
+
+    private final List<HikariDataSource> replicas;
+    private final ReplicaRoutingProperties.Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLongArray acquired;
+
+    public ReplicaPoolDataSource(List<HikariDataSource> replicas, ReplicaRoutingProperties.Selection selection) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Replica routing requires at least one replica");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+        this.acquired = new AtomicLongArray(replicas.size());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(username, password);
+    }
+
+    private Connection connect(String username, String password) throws SQLException {
+        int first = select();
+        SQLException failure = null;
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (first + i) % replicas.size();
+            HikariDataSource replica = replicas.get(index);
+            try {
+                Connection connection = username == null
+                        ? replica.getConnection() : replica.getConnection(username, password);
+                acquired.incrementAndGet(index);
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Replica {} unavailable: {}", replica.getPoolName(), e.getMessage());
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private int select() {
+        if (selection == ReplicaRoutingProperties.Selection.LEAST_LOADED) {
+            int least = 0;
+            int leastActive = Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                int active = activeConnections(replicas.get(i));
+                if (active < leastActive) {
+                    least = i;
+                    leastActive = active;
+                }
+            }
+            return least;
+        }
+        return Math.floorMod(next.getAndIncrement(), replicas.size());
+    }
+
+    /*풀은 처음 커넥션을 달라고 할 때 만들어져서 그 전에는 MXBean이 없다.*/
+    private int activeConnections(HikariDataSource replica) {
+        HikariPoolMXBean pool = replica.getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    public long getAcquired(int index) {
+        return acquired.get(index);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = i;
+            FunctionCounter.builder("querydsl.datasource.replica.connections", acquired, a -> a.get(index))
+                    .description("Connections handed out by a read replica")
+                    .tag("replica", replicas.get(i).getPoolName())
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,171 @@
+package study.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*읽기 전용 트랜잭션은 복제본으로, 나머지는 주 DB로 보내는 DataSource
+ * 검색/카운트/내보내기는 전부 @Transactional(readOnly = true)라서 복제본이 받고
+ * save/saveAll/벌크 update/delete는 쓰기 트랜잭션이라 주 DB에 남는다.
+ *
+ * 어디로 갈지는 AbstractRoutingDataSource가 커넥션을 꺼내는 시점에 정한다.
+ * JpaTransactionManager는 트랜잭션을 시작하면서(doBegin) 바로 커넥션을 꺼내는데
+ * TransactionSynchronizationManager.isCurrentTransactionReadOnly는 그 다음에야 설정된다.
+ * 그래서 트랜잭션 매니저가 doBegin 동안만 "읽기 전용으로 시작 중"을 쓰레드에 표시하고
+ * 라우팅은 그 표시를 먼저 보고, 트랜잭션 밖에서 꺼낼 때는 현재 트랜잭션 상태를 본다.
+ * LazyConnectionDataSourceProxy로 커넥션을 첫 SQL까지 미루는 방법은
+ * p6spy 데코레이터가 getConnection에서 바로 getMetaData를 불러 실제 커넥션을 꺼내버려서 쓸 수 없다.
+ * 커넥션은 트랜잭션(세션) 단위로 정해지니 한 트랜잭션 안에서 읽기/쓰기가 섞이면 주 DB로 간다.
+ *
+ * 주의) 복제본은 복제 지연만큼 예전 데이터를 보여줄 수 있다.
+ * 이 인스턴스에서 쓴 직후(read-your-writes-window)에는 읽기 전용 트랜잭션도 주 DB에서 읽는다. -> RecentWrites
+ * 스키마는 복제로 넘어온다고 보고 ddl-auto는 주 DB에만 적용된다.
+ * 로컬에서는 H2 두개(주 DB / 복제본)를 띄워서 확인한다. -> ReplicaRoutingTest*/
+@Configuration
+@ConditionalOnProperty(name = "querydsl.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaRoutingProperties.class)
+public class ReplicaRoutingConfig {
+
+    /*doBegin 동안만 시작하는 트랜잭션의 읽기 전용 여부를 표시한다.*/
+    private static final ThreadLocal<Boolean> BEGINNING_READ_ONLY = new ThreadLocal<>();
+
+    /*풀들은 빈으로 등록하지 않고 여기서 닫는다.
+    * DataSource 빈이 여러개면 자동설정과 p6spy 데코레이터가 각각 붙어버리기 때문*/
+    @Bean(destroyMethod = "close")
+    public RoutingTargets routingTargets(DataSourceProperties dataSourceProperties,
+                                         ReplicaRoutingProperties routing) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (ReplicaRoutingProperties.Replica replica : routing.getReplicas()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .build();
+            dataSource.setPoolName("replica-" + replicas.size());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.add(dataSource);
+        }
+        return new RoutingTargets(primary, new ReplicaPoolDataSource(replicas, routing.getSelection()));
+    }
+
+    @Bean
+    public RecentWrites recentWrites(ReplicaRoutingProperties routing) {
+        return new RecentWrites(routing.getReadYourWritesWindow());
+    }
+
+    @Bean
+    public DataSource dataSource(RoutingTargets routingTargets, RecentWrites recentWrites) {
+        ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(recentWrites);
+        routing.setTargetDataSources(Map.of(
+                Target.PRIMARY, routingTargets.getPrimary(),
+                Target.REPLICA, routingTargets.getReplicas()));
+        routing.setDefaultTargetDataSource(routingTargets.getPrimary());
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    /*스프링 부트 기본 JpaTransactionManager 대신 등록한다. (customizer는 그대로 적용)*/
+    @Bean
+    public PlatformTransactionManager transactionManager(ObjectProvider<TransactionManagerCustomizers> customizers) {
+        ReadOnlyRoutingTransactionManager transactionManager = new ReadOnlyRoutingTransactionManager();
+        customizers.ifAvailable(customizer -> customizer.customize((TransactionManager) transactionManager));
+        return transactionManager;
+    }
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    static class ReadOnlyRoutingTransactionManager extends JpaTransactionManager {
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            BEGINNING_READ_ONLY.set(definition.isReadOnly());
+            try {
+                super.doBegin(transaction, definition);
+            } finally {
+                BEGINNING_READ_ONLY.remove();
+            }
+        }
+    }
+
+    /*읽기 전용 트랜잭션이면 복제본 묶음, 아니면 주 DB
+    * 읽기 전용이라도 이 인스턴스에서 방금 쓴 적이 있으면 주 DB에서 꺼낸다.*/
+    static class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+
+        private final RecentWrites recentWrites;
+
+        ReadOnlyRoutingDataSource(RecentWrites recentWrites) {
+            this.recentWrites = recentWrites;
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            Boolean beginning = BEGINNING_READ_ONLY.get();
+            boolean readOnly = beginning != null
+                    ? beginning : TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+            if (!readOnly) {
+                return Target.PRIMARY;
+            }
+            return recentWrites.pinToPrimary() ? Target.PRIMARY : Target.REPLICA;
+        }
+    }
+
+    public static class RoutingTargets implements Closeable, MeterBinder {
+
+        private final HikariDataSource primary;
+        private final ReplicaPoolDataSource replicas;
+
+        public RoutingTargets(HikariDataSource primary, ReplicaPoolDataSource replicas) {
+            this.primary = primary;
+            this.replicas = replicas;
+        }
+
+        public HikariDataSource getPrimary() {
+            return primary;
+        }
+
+        public ReplicaPoolDataSource getReplicas() {
+            return replicas;
+        }
+
+        @Override
+        public void bindTo(MeterRegistry registry) {
+            replicas.bindTo(registry);
+        }
+
+        @Override
+        public void close() {
+            replicas.close();
+            primary.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*읽기 복제본 라우팅 설정
+ * querydsl.datasource.routing.enabled=true 일 때만 켜진다.
+ * 주 DB는 spring.datasource를 그대로 쓰고 replicas에 복제본 목록을 준다.
+ * selection은 round-robin(돌아가면서) / least-loaded(사용 중인 커넥션이 가장 적은 곳)
+ * read-your-writes-window는 이 인스턴스에서 쓴 뒤 읽기도 주 DB로 보내는 시간 (복제 지연보다 길게, 0이면 끔)*/
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "querydsl.datasource.routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled;
+    private Selection selection = Selection.ROUND_ROBIN;
+    private Duration readYourWritesWindow = Duration.ofSeconds(2);
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+}
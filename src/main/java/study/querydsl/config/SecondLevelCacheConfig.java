@@ -0,0 +1,108 @@
+package study.querydsl.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.entity.Member;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.ToDoubleFunction;
+
+/*하이버네이트 2차 캐시 (JCache + Caffeine, 프로세스 로컬)
+ * 팀은 거의 바뀌지 않는데 member.getTeam() 프록시 초기화나 em.find(Team)마다 DB에 갔다.
+ * 2차 캐시에 올려두면 영속성 컨텍스트가 비어도(다른 요청이어도) 캐시에서 꺼낸다.
+ *
+ * - 리전마다 Caffeine 캐시를 직접 만들어서 최대 개수/TTL을 따로 준다. (SecondLevelCacheProperties)
+ * - 그 캐시 매니저를 하이버네이트에 그대로 넘긴다.
+ * - Member는 기본으로 끄고 querydsl.cache.member-enabled=true일 때만
+ *   hibernate.classcache 설정으로 member 리전에 올린다.
+ * - 히트/미스/저장 수는 하이버네이트 통계에서 읽어서 querydsl.cache.* 메트릭으로 내보낸다.
+ *   querydsl.cache.statistics-enabled=true일 때만 hibernate.generate_statistics를 켜고
+ *   꺼져 있으면 0만 나오는 메트릭은 등록하지 않는다.
+ *
+ * 캐시는 READ_WRITE라 커밋된 값만 다른 트랜잭션에 보이고
+ * JPQL 벌크 update/delete는 하이버네이트가 해당 리전을 잠그고 비운다. (BulkOperationExecutor 참고)*/
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+    /*테스트처럼 컨텍스트가 여러개 떠도 캐시가 섞이지 않게 컨텍스트마다 따로 만든다.*/
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("querydsl-" + UUID.randomUUID()), getClass().getClassLoader());
+        properties.getRegions().forEach((name, region) -> cacheManager.createCache(name, configuration(region)));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager,
+                                                                    SecondLevelCacheProperties properties) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            if (properties.isStatisticsEnabled()) {
+                hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            }
+            if (properties.isMemberEnabled()) {
+                hibernateProperties.put(AvailableSettings.CLASS_CACHE_PREFIX + "." + Member.class.getName(),
+                        "read-write,member");
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            if (!statistics.isStatisticsEnabled()) {
+                return;
+            }
+            for (String region : statistics.getSecondLevelCacheRegionNames()) {
+                counter(registry, "querydsl.cache.requests", region, "hit", statistics, CacheRegionStatistics::getHitCount);
+                counter(registry, "querydsl.cache.requests", region, "miss", statistics, CacheRegionStatistics::getMissCount);
+                counter(registry, "querydsl.cache.puts", region, null, statistics, CacheRegionStatistics::getPutCount);
+            }
+        };
+    }
+
+    private void counter(MeterRegistry registry, String name, String region,
+                         String result, Statistics statistics, ToDoubleFunction<CacheRegionStatistics> value) {
+        FunctionCounter.Builder<Statistics> builder = FunctionCounter.builder(name, statistics,
+                        s -> value.applyAsDouble(s.getDomainDataRegionStatistics(region)))
+                .description("Hibernate second-level cache " + (result == null ? "puts" : "requests"))
+                .tag("region", region);
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(registry);
+    }
+
+    private CaffeineConfiguration<Object, Object> configuration(SecondLevelCacheProperties.Region region) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(region.getMaxSize()));
+        OptionalLong ttl = OptionalLong.of(region.getTtl().toNanos());
+        if (region.getExpiry() == SecondLevelCacheProperties.Expiry.AFTER_ACCESS) {
+            configuration.setExpireAfterAccess(ttl);
+        } else {
+            configuration.setExpireAfterWrite(ttl);
+        }
+        configuration.setStoreByValue(false);
+        return configuration;
+    }
+}
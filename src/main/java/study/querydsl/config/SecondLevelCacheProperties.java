@@ -0,0 +1,40 @@
+package study.querydsl.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*2차 캐시 리전 설정
+ * querydsl.cache.regions.team.max-size: 1000
+ * querydsl.cache.regions.team.ttl: 1h
+ * querydsl.cache.regions.team.expiry: after-write
+ * 리전마다 최대 개수를 넘으면 Caffeine이 자주 안 쓰이는 것부터 내보내고 (W-TinyLFU)
+ * expiry가 after-write면 저장 후 ttl, after-access면 마지막 조회 후 ttl이 지나면 만료된다.
+ * member-enabled=true면 Member도 member 리전에 캐시한다.
+ * statistics-enabled=true면 하이버네이트 통계를 켜고 캐시 히트/미스 메트릭을 내보낸다.
+ * 통계는 세션/쿼리마다 카운터를 올리는 비용이 있어서 기본은 꺼둔다.*/
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "querydsl.cache")
+public class SecondLevelCacheProperties {
+
+    private boolean memberEnabled;
+    private boolean statisticsEnabled;
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Region {
+        private long maxSize = 1000;
+        private Duration ttl = Duration.ofMinutes(10);
+        private Expiry expiry = Expiry.AFTER_WRITE;
+    }
+
+    public enum Expiry {
+        AFTER_WRITE, AFTER_ACCESS
+    }
+}
@@ -1,23 +1,35 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.CursorPage;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
+    private static final int MAX_CURSOR_SIZE = 100;
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/v1/members")
     public List<MemberTeamDto> searchMemberV1(@ModelAttribute MemberSearchCondition condition){
@@ -31,6 +43,26 @@ public class MemberController {
     * 프로파일로 나누는게 좋다.*/
 
     /*컨트롤러 개발*/
+    @GetMapping(value = "/v1/members/export", produces = "application/x-ndjson")
+    public void exportMembers(@ModelAttribute MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        memberJpaRepository.export(condition, dto -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(dto));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+    /*대용량 내보내기
+    * 한줄에 JSON 하나씩(NDJSON) 읽는 대로 바로 응답에 쓴다.
+    * 리스트로 모았다가 한번에 직렬화하지 않기 때문에 몇백만건이어도 힙이 일정하다.
+    * 응답 버퍼가 차면 그때그때 클라이언트로 흘려보낸다.*/
+
     @GetMapping("/v2/members")
     public Page<MemberTeamDto> searchMemberV2(@ModelAttribute MemberSearchCondition condition, Pageable pageable){
         return memberRepository.searchPageSimple(condition,pageable);
@@ -58,6 +90,23 @@ public class MemberController {
     * 그래서 파라미터로 받아서 그때그때 오더 조건으로 넣는걸 권장한다.
     * */
 
+    @GetMapping("/v4/members")
+    public CursorPage<MemberTeamDto> searchMemberV4(@ModelAttribute MemberSearchCondition condition,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "20") int size){
+        return memberRepository.searchByCursor(condition, cursor, Math.max(1, Math.min(size, MAX_CURSOR_SIZE)));
+    }
+    /*키셋 페이징
+    * 토탈 대신 nextCursor를 내려주고 클라이언트는 그걸 다음 요청의 cursor로 넘긴다.
+    * offset을 쓰지 않아서 뒤 페이지로 가도 첫 페이지와 비용이 같다.
+    * size는 Pageable처럼 최대값으로 자른다. 그대로 받으면 size=1000000 한번에 테이블 전체를 읽는다.
+    * 깨진 cursor는 InvalidCursorException으로 400이 된다.*/
 
+    @GetMapping("/v5/members")
+    public Slice<MemberTeamDto> searchMemberV5(@ModelAttribute MemberSearchCondition condition, Pageable pageable){
+        return memberRepository.searchSlice(condition, pageable);
+    }
+    /*무한 스크롤용
+    * 토탈 없이 hasNext(last)만 내려주기 때문에 카운트 쿼리가 나가지 않는다.*/
 
 }
@@ -4,12 +4,20 @@ import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 @Profile("local")
 /*application의 프로파일에 조건이 일치하면 동작
 * 그러면 시작할때 데이터를 넣고 시작하도록 할 수 있다.*/
@@ -24,21 +32,101 @@ public class initMember {
             initMemberService.init();
     }
 
+    @Slf4j
     @Component
     static class InitMemberService{
 
         @PersistenceContext private EntityManager em;
+
+        @Value("${querydsl.seed.members:100}") private int memberCount;
+        @Value("${querydsl.seed.teams:2}") private int teamCount;
+        @Value("${querydsl.seed.batch-size:1000}") private int batchSize;
+        @Value("${querydsl.seed.realistic:false}") private boolean realistic;
+        @Value("${querydsl.seed.random-seed:42}") private long randomSeed;
+
         @Transactional
         public void init(){
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
-            em.persist(teamA);
-            em.persist(teamB);
-
-            for(int i = 0;i <100;i++){
-                Team selectedTeam = i%2==0?teamA:teamB;
-                em.persist(new Member("member"+i,i,selectedTeam));
+            long start = System.nanoTime();
+            em.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+            List<Long> teamIds = new ArrayList<>(teamCount);
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team("team" + teamSuffix(i));
+                em.persist(team);
+                teamIds.add(team.getId());
+            }
+            em.flush();
+            em.clear();
+
+            Random random = new Random(randomSeed);
+            double[] teamWeights = realistic ? zipfCumulativeWeights(teamCount) : null;
+            for (int i = 0; i < memberCount; i++) {
+                int teamIndex = realistic ? pick(teamWeights, random) : i % teamCount;
+                int age = realistic ? realisticAge(random) : i;
+
+                Member member = new Member("member" + i, age);
+                member.setTeam(em.getReference(Team.class, teamIds.get(teamIndex)));
+                em.persist(member);
+
+                if ((i + 1) % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                    if ((i + 1) % (batchSize * 100L) == 0) {
+                        log.info("seeded {} / {} members", i + 1, memberCount);
+                    }
+                }
             }
+            em.flush();
+            em.clear();
+
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            long rows = (long) teamCount + memberCount;
+            log.info("seeded {} teams, {} members in {} s ({} rows/s)",
+                    teamCount, memberCount, String.format("%.2f", seconds), Math.round(rows / Math.max(seconds, 0.001)));
+        }
+        /*대용량 시드 데이터 생성기
+        * 기본값(100명, 팀 2개)은 예전처럼 teamA/teamB에 번갈아 넣고 나이는 0~99
+        * querydsl.seed.members=1000000 처럼 늘려서 성능 테스트용 데이터를 만든다.
+        *
+        * - 세션 단위 JDBC 배치 크기를 batch-size로 맞추고 batch-size마다 flush/clear
+        *   영속성 컨텍스트가 쌓이지 않아서 건수와 관계없이 메모리가 일정하다.
+        * - id는 PooledSequenceGenerator가 allocation-size만큼 한번에 할당해서
+        *   회원마다 시퀀스를 호출하지 않는다.
+        * - 연관관계 주인(member.team)만 세팅한다. changeTeam은 team.members를 로딩하기 때문
+        * - realistic=true면 팀 크기는 지프 분포(몇몇 팀에 몰림), 나이는 평균 35세 정규분포*/
+
+        /*0 -> A, 1 -> B, ... 25 -> Z, 26 -> AA*/
+        private String teamSuffix(int index) {
+            StringBuilder suffix = new StringBuilder();
+            int n = index;
+            do {
+                suffix.insert(0, (char) ('A' + n % 26));
+                n = n / 26 - 1;
+            } while (n >= 0);
+            return suffix.toString();
+        }
+
+        private double[] zipfCumulativeWeights(int size) {
+            double[] cumulative = new double[size];
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulative[i] /= sum;
+            }
+            return cumulative;
+        }
+
+        private int pick(double[] cumulative, Random random) {
+            int idx = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(idx >= 0 ? idx : -idx - 1, cumulative.length - 1);
+        }
+
+        private int realisticAge(Random random) {
+            int age = (int) Math.round(35 + random.nextGaussian() * 12);
+            return Math.max(15, Math.min(80, age));
         }
         /*트랜젝션을 포스트컴포넌트에 넣으면안되나요?
         * 안된다.
@@ -1,6 +1,7 @@
 package study.querydsl.dto;
 
 import lombok.Data;
+import org.springframework.util.StringUtils;
 
 @Data
 public class MemberSearchCondition {
@@ -11,4 +12,19 @@ public class MemberSearchCondition {
     private Integer ageGoe;
     private Integer ageLoe;
     //화면의 파라미터
+
+    /*캐시 키 등으로 쓸 때 같은 조건이 같은 값이 되도록 정규화
+    * 앞뒤 공백 제거, 빈 문자열은 조건이 없는 것(null)과 같다.*/
+    public MemberSearchCondition normalized() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(normalize(username));
+        normalized.setTeamname(normalize(teamname));
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
+
+    private static String normalize(String value) {
+        return StringUtils.hasText(value) ? value.trim() : null;
+    }
 }
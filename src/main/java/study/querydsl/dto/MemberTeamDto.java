@@ -20,6 +20,13 @@ public class MemberTeamDto {
         this.teamId = teamId;
         this.teamName = teamName;
     }
+
+    @QueryProjection
+    public MemberTeamDto(Long memberId, String username, int age, Long teamId) {
+        this(memberId, username, age, teamId, null);
+    }
+    /*팀 조인 없이 member 테이블만 읽을 때
+    * teamName은 TeamDictionary에서 채운다.*/
     /*쿼리 프로젝션 단점이 
     * dto가 쿼리dsl에 의존하게 되서 단점이된다.
     * 그래서 프로젝션빈이나 컨스트럭터를 사용하면 된다.
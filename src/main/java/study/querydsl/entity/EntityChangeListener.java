@@ -0,0 +1,29 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/*JPA 엔티티 리스너
+ * 스프링 부트가 하이버네이트에 스프링 빈 컨테이너를 연결해주기 때문에
+ * 엔티티 리스너도 빈으로 만들어서 주입을 받을 수 있다.
+ * 단, JPQL 벌크 연산(update/delete)은 영속성 컨텍스트를 거치지 않아서
+ * 여기로 들어오지 않는다. 벌크 연산 쪽에서 직접 이벤트를 발행해야 한다.*/
+@Component
+public class EntityChangeListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public EntityChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        publisher.publishEvent(new EntityChangedEvent(entity.getClass()));
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/*Member/Team이 저장/수정/삭제되었을 때 발행되는 이벤트
+ * 캐시처럼 DB 상태에 의존하는 곳에서 받아서 무효화한다.*/
+@Getter
+@ToString
+public class EntityChangedEvent {
+
+    private final Class<?> entityType;
+
+    public EntityChangedEvent(Class<?> entityType) {
+        this.entityType = entityType;
+    }
+}
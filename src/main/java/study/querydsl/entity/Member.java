@@ -2,14 +2,17 @@ package study.querydsl.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
 @Getter
 @Setter //Setter는 가급적이면 실무에서 사용하지 않는 게 좋다.
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of={"id","username","age"})
 public class Member {
-    @Id @GeneratedValue
+    @Id @PooledSequence("member_seq")
+    //할당 크기만큼 id를 미리 받아두는 pooled-lo 시퀀스 -> PooledSequenceGenerator 참고
     @Column(name = "member_id")
     private Long id;
 
@@ -39,10 +42,24 @@ public class Member {
     }
     // 양방향 연관관계 주입 메서드
     public void changeTeam(Team team){
+        if(this.team != null && this.team != team && Hibernate.isInitialized(this.team.getMembers())){
+            this.team.getMembers().remove(this);
+        }
         this.team=team;
         team.getMembers().add(this);
         //팀이 변경될 때 내 자신의 team도 바꾸지만 기존의 team에 속한 곳에도 변경해줘야 한다.
     }
+    /*팀 크기와 관계없이 비용이 일정하게
+    * team.members는 mappedBy(읽기 전용) 쪽이고 순서 컬럼이 없는 List라서 하이버네이트 bag이 된다.
+    * 로딩 안된 inverse bag에 add하면 하이버네이트는 컬렉션을 읽지 않고
+    * 연산만 큐에 쌓아뒀다가 나중에 초기화될 때 합쳐준다.
+    * 그래서 팀원이 몇만명이어도 회원 한명 추가는 컬렉션 select 없이 끝난다.
+    * (@OrderColumn을 붙이거나 Set으로 바꾸면 add할 때 전체를 로딩하니 주의)
+    *
+    * remove는 큐에 쌓이지 않고 전체를 로딩하기 때문에
+    * 예전 팀의 members가 이미 로딩된 경우에만 메모리에서 빼준다.
+    * 로딩 안된 경우는 외래키(member.team)만 바뀌면 되므로 건드리지 않는다.
+    * 프록시를 거쳐야 하므로 필드 대신 getMembers()로 접근한다.*/
     //ToString을 만들 때는 아래처럼 만들거나 롬복으로 만들면 되는데
     //이때 Team은 들어가면 안된다. 만약 team이 들어가면 순환 구조가 되면서 오류가 나게 된다.
     //
@@ -0,0 +1,23 @@
+package study.querydsl.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/*id 필드에 붙이는 pooled-lo 시퀀스 생성기 어노테이션
+ * @GenericGenerator(type = ...)는 하이버네이트 6.5에서 삭제 예정이라
+ * @IdGeneratorType으로 생성기 클래스를 연결한다.
+ * @GeneratedValue 없이 @Id와 같이 쓴다. -> PooledSequenceGenerator 참고*/
+@IdGeneratorType(PooledSequenceGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface PooledSequence {
+
+    /*DB 시퀀스 이름*/
+    String value();
+}
@@ -0,0 +1,64 @@
+package study.querydsl.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+
+/*pooled-lo 시퀀스 id 생성기
+ * 맨 @GeneratedValue는 엔티티마다 기본 시퀀스를 쓰는데
+ * allocationSize가 어노테이션 상수라 환경별로 바꿀 수가 없다.
+ * 그래서 SequenceStyleGenerator를 상속해서 할당 크기를 설정에서 읽는다.
+ *
+ *  querydsl.id.allocation-size : 시퀀스 한번 호출로 가져갈 id 개수 (= DB 시퀀스 increment by)
+ *
+ * 옵티마이저는 pooled-lo로 고정한다.
+ * pooled는 nextval 값을 구간의 끝으로, pooled-lo는 시작으로 쓰기 때문에
+ * 같은 시퀀스를 두 방식이 같이 쓰면 구간이 겹친다.
+ * 예전 querydsl.id.optimizer 설정이 pooled-lo가 아니면 기동 시점에 실패한다.
+ *
+ * 스프링 부트는 spring.jpa.properties.* 를 그대로 하이버네이트 설정으로 넘기기 때문에
+ * ConfigurationService에서 꺼내 쓸 수 있다.
+ *
+ * 여러 인스턴스가 같은 DB를 쓸 때
+ * 각 인스턴스는 nextval로 서로 겹치지 않는 구간을 받아가므로 안전하다.
+ * 단, 인스턴스마다 allocation-size가 다르면 구간이 겹칠 수 있어서
+ * hibernate.id.sequence.increment_size_mismatch_strategy=exception 으로
+ * DB 시퀀스의 increment와 다르면 기동 시점에 실패하게 한다.*/
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE_SETTING = "querydsl.id.allocation-size";
+    public static final String OPTIMIZER_SETTING = "querydsl.id.optimizer";
+
+    private static final int DEFAULT_ALLOCATION_SIZE = 50;
+    private static final String OPTIMIZER = "pooled-lo";
+
+    private final String sequenceName;
+
+    /*@PooledSequence 어노테이션 값으로 하이버네이트가 만든다.*/
+    public PooledSequenceGenerator(PooledSequence config) {
+        this.sequenceName = config.value();
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<String, Object> settings = serviceRegistry.requireService(ConfigurationService.class).getSettings();
+        int allocationSize = Integer.parseInt(String.valueOf(
+                settings.getOrDefault(ALLOCATION_SIZE_SETTING, DEFAULT_ALLOCATION_SIZE)));
+        if (allocationSize < 1) {
+            throw new MappingException(ALLOCATION_SIZE_SETTING + " must be greater than zero");
+        }
+        Object optimizer = settings.get(OPTIMIZER_SETTING);
+        if (optimizer != null && !OPTIMIZER.equals(String.valueOf(optimizer))) {
+            throw new MappingException(OPTIMIZER_SETTING + " is no longer supported, ids always use " + OPTIMIZER);
+        }
+        parameters.setProperty(SEQUENCE_PARAM, sequenceName);
+        parameters.setProperty(INCREMENT_PARAM, String.valueOf(allocationSize));
+        parameters.setProperty(OPT_PARAM, OPTIMIZER);
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
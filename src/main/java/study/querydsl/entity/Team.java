@@ -1,25 +1,43 @@
 package study.querydsl.entity;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@EntityListeners(EntityChangeListener.class)
+@BatchSize(size = 500)
+/*배치 페치
+* member.getTeam()으로 팀 프록시를 초기화할 때 팀을 하나씩 select하지 않고
+* 영속성 컨텍스트에 있는 초기화 안된 팀 프록시를 id in (...)으로 한번에 읽는다.
+* 전역 기본값은 hibernate.default_batch_fetch_size이고
+* 팀은 로우가 작고 자주 읽혀서 엔티티 단위로 더 크게 잡았다.*/
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "team")
+/*2차 캐시
+* 팀은 거의 바뀌지 않는 참조 데이터라 team 리전에 올려두고
+* 프록시 초기화/em.find 때 DB 대신 캐시에서 꺼낸다. -> SecondLevelCacheConfig 참고*/
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)     //jpa는 기본생성자가 항상 필요하다.
 @ToString(of={"id","username"})
 public class Team {
-    @Id @GeneratedValue
+    @Id @PooledSequence("team_seq")
     private Long id;
     private String name;
 
     @OneToMany(mappedBy = "team")
+    @BatchSize(size = 100)
     List<Member> members = new ArrayList<>();
+    //팀 목록에서 members를 건드리면 팀 100개씩 회원을 한번에 읽는다.
     //Many인 user가 연관관계의 주인이 된다.
     //그래서 외례키 값을 업데이트 하지 않는다.
     public Team(String name){
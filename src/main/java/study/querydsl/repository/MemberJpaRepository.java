@@ -3,9 +3,14 @@ package study.querydsl.repository;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
@@ -13,14 +18,19 @@ import study.querydsl.dto.QMemberDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.SearchCoalescer;
+import study.querydsl.repository.support.SearchResultCache;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static org.springframework.util.StringUtils.hasText;
 import static org.springframework.util.StringUtils.isEmpty;
 import static study.querydsl.entity.QMember.*;
-import static study.querydsl.entity.QTeam.team;
 
 /* 기존의 DAO와 비슷*/
 @Repository
@@ -28,6 +38,12 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final int exportFetchSize;
+    private final int exportClearInterval;
+    private final int importBatchSize;
+    private final TeamDictionary teamDictionary;
+    private final SearchResultCache searchResultCache;
+    private final SearchCoalescer searchCoalescer;
     /*이떄 em/queryFactory가 싱글톤인데
     * 멀티쓰래드에서 다쓰면 동시성 문제?
     * 문제가 되지 않는다.
@@ -43,9 +59,19 @@ public class MemberJpaRepository {
     * ->해당 내용은 트랜잭션 범위의 영속성 컨텍스트에 대해서 알면 좋다.
     * 결국 스프링단에서 하는 메세지큐같은 역할같은데 확인해보자.*/
 
-    public MemberJpaRepository(EntityManager em,JPAQueryFactory queryFactory) {
+    public MemberJpaRepository(EntityManager em,JPAQueryFactory queryFactory,TeamDictionary teamDictionary,
+                               SearchResultCache searchResultCache, SearchCoalescer searchCoalescer,
+                               @Value("${querydsl.export.fetch-size:1000}") int exportFetchSize,
+                               @Value("${querydsl.export.clear-interval:1000}") int exportClearInterval,
+                               @Value("${querydsl.import.batch-size:1000}") int importBatchSize) {
         this.em = em;
         this.queryFactory = queryFactory;
+        this.exportFetchSize = exportFetchSize;
+        this.exportClearInterval = exportClearInterval;
+        this.importBatchSize = importBatchSize;
+        this.teamDictionary = teamDictionary;
+        this.searchResultCache = searchResultCache;
+        this.searchCoalescer = searchCoalescer;
         /*이렇게 빈으로 등록해놓고 자동주입으로
         * 주입받아도 가능하다.
         * 이러한 빈 구조로 만들면
@@ -76,24 +102,92 @@ public class MemberJpaRepository {
         em.persist(member);
     }
 
+    /*대량 저장(import)
+    * save를 반복하면 persist한 엔티티와 dirty checking용 스냅샷이
+    * 트랜잭션이 끝날때까지 영속성 컨텍스트에 계속 쌓인다.
+    * 그래서 batchSize건마다 flush(JDBC 배치 insert) 후 clear해서
+    * 입력이 몇건이든 메모리에는 batchSize건만 올라가 있도록 한다.
+    *
+    * - 세션의 JDBC 배치 크기를 batchSize로 맞추고 끝나면 원래대로 돌려놓는다.
+    * - 아직 저장되지 않은 팀은 회원보다 먼저 persist한다.
+    *   hibernate.order_inserts가 켜져 있어서 flush할 때 team insert를 묶어서 먼저,
+    *   member insert를 묶어서 나중에 보낸다.
+    * - clear 이후에 같은 팀을 참조하는 회원은 준영속 팀을 그대로 써도 된다.
+    *   member.team은 외래키 값(id)만 필요하기 때문
+    * - Iterable은 한건씩 꺼내 쓰므로 호출하는 쪽이 지연 생성하면(파일 읽기 등) 전부 메모리에 올릴 필요가 없다.
+    *   단, new Member(.., team)은 changeTeam으로 team.members에 회원을 계속 쌓으니
+    *   대량 입력은 setTeam으로 연관관계 주인 쪽만 세팅하는게 좋다.*/
+    @Transactional
+    public long saveAll(Iterable<Member> members){
+        return saveAll(members, importBatchSize);
+    }
+
+    @Transactional
+    public long saveAll(Stream<Member> members){
+        return saveAll(members, importBatchSize);
+    }
+
+    @Transactional
+    public long saveAll(Stream<Member> members, int batchSize){
+        try (members) {
+            return saveAll(members::iterator, batchSize);
+        }
+    }
+
+    @Transactional
+    public long saveAll(Iterable<Member> members, int batchSize){
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be greater than zero");
+        }
+        Session session = em.unwrap(Session.class);
+        Integer previousBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+        try {
+            long count = 0;
+            for (Member member : members) {
+                Team memberTeam = member.getTeam();
+                if (memberTeam != null && memberTeam.getId() == null) {
+                    em.persist(memberTeam);
+                }
+                em.persist(member);
+                if (++count % batchSize == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            em.clear();
+            return count;
+        } finally {
+            session.setJdbcBatchSize(previousBatchSize);
+        }
+    }
+
     public Optional<Member> findById(Long id){
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll(){
         return em.createQuery("select m from Member m", Member.class)
                 .getResultList();
     }
     /*이처럼 위에 쿼리를 치는 것보다
     * 자바코드로 한번에 만들 수 있다.*/
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl(){
          return queryFactory
                  .selectFrom(member)
                  .fetch();
     }
+    /*조회 전용 메서드는 @Transactional(readOnly = true)만 건다.
+    * 스프링이 세션을 defaultReadOnly + FlushMode.MANUAL로 열어서
+    * 엔티티 스냅샷을 만들지 않고 flush도 하지 않는다. 쿼리마다 따로 힌트를 줄 필요가 없다.
+    * 바깥 쓰기 트랜잭션에 참여하면 그 트랜잭션을 그대로 써서 수정한 값이 flush된다.*/
 
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
         return em.createQuery("select m from Member m where m.username= :username", Member.class)
                 .setParameter("username",username)
@@ -102,6 +196,7 @@ public class MemberJpaRepository {
     /*이걸 보면 알겠지만 단순히 쿼리 빌드 느낌으로 깔끔하게 된느걸
     * 볼 수 있다.*/
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername_Querydsl(String username) {
         return queryFactory
                 .selectFrom(member)
@@ -110,6 +205,7 @@ public class MemberJpaRepository {
     }
 
     /*검색 조건 생성*/
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
         /*빌더를 통한 동적 쿼리 생성*/
         BooleanBuilder builder = new BooleanBuilder();
@@ -118,7 +214,7 @@ public class MemberJpaRepository {
             builder.and(member.username.eq(condition.getUsername()));
         }
         if(hasText(condition.getTeamname())){
-            builder.and(team.name.eq(condition.getTeamname()));
+            builder.and(member.team.id.in(teamDictionary.idsOf(condition.getTeamname())));
         }
         //hasText -> null !=  "" !=
         if(condition.getAgeGoe() != null){
@@ -129,42 +225,79 @@ public class MemberJpaRepository {
         }
         /*이렇게 동적쿼리와 성능최적화까지 가능하다.*/
 
-        return queryFactory
+        List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ))
                 .from(member)
-                .leftJoin(member.team, team)
                 .where(builder)
                 .fetch();
+        return MemberSearchTemplates.fillTeamNames(content, teamDictionary);
     }
+    /*팀 이름 조건은 팀 사전으로 id로 바꾸고 teamName도 사전에서 채운다. (team 조인 없음)*/
 
     /*where절 파라미터 방식*/
     public List<MemberTeamDto> search(MemberSearchCondition condition){
+        MemberSearchCondition normalized = condition.normalized();
+        List<Object> key = List.of("member-search", normalized);
+        return searchResultCache.list(key, () -> searchCoalescer.execute(key,
+                () -> MemberSearchTemplates.search(em, teamDictionary, normalized)));
+    }
+    /*조건 모양(16가지)별로 미리 직렬화해둔 JPQL에 값만 바인딩해서 실행한다.
+    * 결과는 아래 searchQuery와 같고 둘 다 팀 이름 조건을 팀 사전으로 id로 바꿔서
+    * left join team 없이 member 테이블만 읽는다.
+    * 트랜잭션 밖이나 읽기 전용 트랜잭션에서 같은 조건이 반복되면 SearchResultCache에서 꺼내고
+    * 동시에 들어온 같은 검색은 SearchCoalescer로 한번만 실행한다.
+    * @Transactional을 걸지 않고 실제로 조회하는 요청만 SearchCoalescer가 읽기 전용 트랜잭션을 연다.*/
+
+    /*대용량 검색 결과 스트리밍
+    * search()는 결과 전체를 List로 메모리에 올리지만
+    * 여기서는 JDBC 커서(fetchSize 단위)로 읽으면서 한건씩 sink로 넘긴다.
+    * 스트림이 열려있는 동안 커넥션이 필요해서 트랜잭션 안에서 끝까지 소비해야 한다.
+    * clearInterval건마다 영속성 컨텍스트를 비워서 몇백만건이어도 힙 사용량이 일정하다.
+    * teamName은 로우마다 팀 사전에서 채운다. (사전에 없는 팀이 나와도 다시 읽는건 miss-reload-interval에 한번)
+    * (H2는 URL에 LAZY_QUERY_EXECUTION=1을 줘야 결과를 한번에 다 올리지 않는다. -> application.yml datasource url)*/
+    @Transactional(readOnly = true)
+    public long export(MemberSearchCondition condition, Consumer<MemberTeamDto> sink){
+        long count = 0;
+        try (Stream<MemberTeamDto> stream = searchQuery(condition)
+                .orderBy(member.id.asc())
+                .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize)
+                .stream()) {
+            Iterator<MemberTeamDto> rows = stream.iterator();
+            while (rows.hasNext()) {
+                MemberTeamDto row = rows.next();
+                row.setTeamName(teamDictionary.nameOf(row.getTeamId()));
+                sink.accept(row);
+                if (++count % exportClearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+        return count;
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCondition condition){
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ))
                 .from(member)
-                .leftJoin(member.team,team)
                 .where(
                         usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
+                        teamIdIn(condition.getTeamname()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                )
+                );
                 /*쿼리처럼 깔끔하게 데이터가 나오는 걸 볼 수 있다.
                 * 이렇게 BooleanExpression타입으로 만들어놓으면
                 * 아래 함수들을 조건절에 재사용이 가능하다.*/
-                .fetch();
     }
     /*where절 조건 방식
     * predicate보단
@@ -173,13 +306,13 @@ public class MemberJpaRepository {
 
     /*이와 같이 조건을 재사용할 수 있으며
     * null만 조심하면 이러한 조건들을 조립하여 활용이 가능하다.*/
+    @Transactional(readOnly = true)
     public List<Member> searchMember(MemberSearchCondition condition){
         return queryFactory
                 .selectFrom(member)
-                .leftJoin(member.team,team)
                 .where(
                         usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
+                        teamIdIn(condition.getTeamname()),
                         ageBetween(condition.getAgeLoe(), condition.getAgeGoe())
                 )
 
@@ -196,8 +329,9 @@ public class MemberJpaRepository {
         return hasText(username) ? member.username.eq(username) : null ;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    /*팀 이름을 팀 사전으로 id로 바꿔서 member.team_id(외래키)로 거른다. 없는 팀 이름이면 결과가 없다.*/
+    private BooleanExpression teamIdIn(String teamName) {
+        return hasText(teamName) ? member.team.id.in(teamDictionary.idsOf(teamName)) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -6,12 +6,13 @@ import jakarta.persistence.EntityManager;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.SearchCoalescer;
+import study.querydsl.repository.support.SearchResultCache;
 
 import java.util.List;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
-import static study.querydsl.entity.QTeam.team;
 
 /*굳이 커스텀에 억압되어 사용하기보단
 * 핵심 비즈니스로 잘 사용 가능하다면
@@ -19,26 +20,45 @@ import static study.querydsl.entity.QTeam.team;
 * 기능이기 떄문에 별도로 빼는게 나을 수 있다.*/
 public class MemberQueryRepository {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
-    public MemberQueryRepository(EntityManager em){
+    private final TeamDictionary teamDictionary;
+    private final SearchResultCache searchResultCache;
+    private final SearchCoalescer searchCoalescer;
+    public MemberQueryRepository(EntityManager em, TeamDictionary teamDictionary, SearchResultCache searchResultCache,
+                                 SearchCoalescer searchCoalescer){
+        this.em=em;
         this.queryFactory=new JPAQueryFactory(em);
+        this.teamDictionary=teamDictionary;
+        this.searchResultCache=searchResultCache;
+        this.searchCoalescer=searchCoalescer;
     }
 
-    /*where절 파라미터 방식*/
+    /*where절 파라미터 방식
+    * 조건 모양별로 미리 직렬화해둔 템플릿에 값만 바인딩한다.
+    * 팀 이름은 팀 사전으로 id로 바꿔서 team 조인 없이 조회한다.
+    * 같은 조건이 반복되면 검색 결과 캐시에서 꺼내고 동시에 들어온 같은 검색은 한번만 실행한다.*/
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
+        MemberSearchCondition normalized = condition.normalized();
+        List<Object> key = List.of("member-search", normalized);
+        return searchResultCache.list(key, () -> searchCoalescer.execute(key,
+                () -> MemberSearchTemplates.search(em, teamDictionary, normalized)));
+    }
+
+    /*템플릿으로 바꾸기 전 원래 쿼리 (매번 표현식 트리 생성 + 직렬화)
+    * 조건과 결과는 템플릿과 같게 팀 사전으로 team 조인 없이 읽는다.*/
+    public List<MemberTeamDto> searchQuerydsl(MemberSearchCondition condition){
+        List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ))
                 .from(member)
-                .leftJoin(member.team,team)
                 .where(
                         usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
+                        teamIdIn(condition.getTeamname()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
@@ -46,6 +66,7 @@ public class MemberQueryRepository {
                  * 이렇게 BooleanExpression타입으로 만들어놓으면
                  * 아래 함수들을 조건절에 재사용이 가능하다.*/
                 .fetch();
+        return MemberSearchTemplates.fillTeamNames(content, teamDictionary);
     }
     /*이런 복잡한 쿼리는 결국 직접 만들어야 된다.
      * 조회가 복잡하면
@@ -63,8 +84,8 @@ public class MemberQueryRepository {
         return hasText(username) ? member.username.eq(username) : null ;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    private BooleanExpression teamIdIn(String teamName) {
+        return hasText(teamName) ? member.team.id.in(teamDictionary.idsOf(teamName)) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -2,8 +2,11 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.support.BulkResult;
+import study.querydsl.repository.support.CursorPage;
 
 import java.util.List;
 /*JPA는 인터페이스이기 때문에
@@ -23,5 +26,30 @@ public interface MemberRepositoryCustom {
 
     public Page<MemberTeamDto> searchPageComplexPage(MemberSearchCondition condition, Pageable pageable);
 
+    /*카운트를 상한(ceiling)까지만 세고 넘으면 "N건 이상"으로 표시 (CappedPage)*/
+    Page<MemberTeamDto> searchPageCapped(MemberSearchCondition condition, Pageable pageable);
+
+    /*컨텐츠 쿼리와 카운트 쿼리를 동시에 실행*/
+    Page<MemberTeamDto> searchPageComplexParallel(MemberSearchCondition condition, Pageable pageable);
+
+    /*count(*) over() 윈도우 함수로 컨텐츠와 토탈을 쿼리 한번에 조회*/
+    Page<MemberTeamDto> searchPageWindow(MemberSearchCondition condition, Pageable pageable);
+
+    /*Slice 조회
+    * 다음 페이지 여부만 알려주고 카운트 쿼리는 날리지 않는다. (무한 스크롤용)*/
+    Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable);
+
+    /*키셋 페이징
+    * 전체 카운트 대신 다음 페이지 커서를 반환한다.*/
+    CursorPage<MemberTeamDto> searchByCursor(MemberSearchCondition condition, String cursor, int size);
+
+    /*청크 단위 벌크 연산
+    * 조건에 걸리는 회원을 id 구간별로 나눠서 update/delete하고
+    * 영속성 컨텍스트는 자동으로 flush/clear한다.
+    * 영향받은 로우 수와 걸린 시간을 반환한다.*/
+    BulkResult bulkAddAge(MemberSearchCondition condition, int delta);
+
+    BulkResult bulkDelete(MemberSearchCondition condition);
+
 
 }
@@ -1,20 +1,41 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
 import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.BulkOperationExecutor;
+import study.querydsl.repository.support.BulkResult;
+import study.querydsl.repository.support.CappedCount;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.CountQueryDerivation;
+import study.querydsl.repository.support.CountQueryExecutor;
+import study.querydsl.repository.support.CursorPage;
+import study.querydsl.repository.support.KeysetCursor;
+import study.querydsl.repository.support.KeysetPagination;
+import study.querydsl.repository.support.QueryMemo;
+import study.querydsl.repository.support.RowCountEstimator;
+import study.querydsl.repository.support.SearchCoalescer;
+import study.querydsl.repository.support.SearchResultCache;
+import study.querydsl.repository.support.SlicePagination;
+import study.querydsl.repository.support.WindowCountPagination;
 
 import java.util.List;
 
@@ -25,16 +46,38 @@ import static study.querydsl.entity.QTeam.team;
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom{
 
     private final JPAQueryFactory queryFactory;
+    private final CountQueryExecutor countQueryExecutor;
+    private final CountCache countCache;
+    private final RowCountEstimator rowCountEstimator;
+    private final long countCeiling;
+    private final BulkOperationExecutor bulkOperationExecutor;
+    private final QueryMemo queryMemo;
+    private final TeamDictionary teamDictionary;
+    private final SearchResultCache searchResultCache;
+    private final SearchCoalescer searchCoalescer;
     /**
      * Querydsl 리포지토리 서포트
      * 추상클래스로 쿼리 dsl라이브러리 구현체가 받으면
      * 편리하게 사용할 수 있다.
      * 추상 클래스라서
      * */
-    public MemberRepositoryImpl(EntityManager em){
+    public MemberRepositoryImpl(EntityManager em, CountQueryExecutor countQueryExecutor, CountCache countCache,
+                                RowCountEstimator rowCountEstimator, BulkOperationExecutor bulkOperationExecutor,
+                                QueryMemo queryMemo, TeamDictionary teamDictionary, SearchResultCache searchResultCache,
+                                SearchCoalescer searchCoalescer,
+                                @Value("${querydsl.paging.count-ceiling:1000}") long countCeiling){
 
         super(Member.class);
         this.queryFactory = new JPAQueryFactory(em);
+        this.countQueryExecutor = countQueryExecutor;
+        this.countCache = countCache;
+        this.rowCountEstimator = rowCountEstimator;
+        this.countCeiling = countCeiling;
+        this.bulkOperationExecutor = bulkOperationExecutor;
+        this.queryMemo = queryMemo;
+        this.teamDictionary = teamDictionary;
+        this.searchResultCache = searchResultCache;
+        this.searchCoalescer = searchCoalescer;
     }
     //엔티티 메니져와 쿼리dsl유틸리티를 활용 가능하다.
     //그리고 from이나 delete같은걸 사용할 수 있다.
@@ -49,46 +92,19 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     @Override
     /*where절 파라미터 방식*/
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        /*이러면 from()을 통해 바로 쿼리를 시작할 수있따.*/
-        List<MemberTeamDto> result = from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .fetch();
-        /*예전 3버전에서 만들어졌는데 이때
-        * from부터 시작해서 지금도 이렇게 되는 것*/
-
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team,team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                /*쿼리처럼 깔끔하게 데이터가 나오는 걸 볼 수 있다.
-                 * 이렇게 BooleanExpression타입으로 만들어놓으면
-                 * 아래 함수들을 조건절에 재사용이 가능하다.*/
-                .fetch();
+        MemberSearchCondition normalized = condition.normalized();
+        List<Object> key = List.of("member-search", normalized);
+        return searchResultCache.list(key, () -> searchCoalescer.execute(key, () -> queryMemo.fetch(key,
+                "member search " + condition,
+                () -> MemberSearchTemplates.search(getEntityManager(), teamDictionary, normalized))));
+        /*queryFactory로 매번 조립하던 같은 쿼리를
+        * 조건 모양별로 미리 직렬화해둔 템플릿에 값만 바인딩해서 실행한다.
+        * 한 트랜잭션 안에서 같은 검색이 반복되면 QueryMemo가 경고를 남긴다.
+        * 트랜잭션을 넘어 반복되는 같은 검색은 SearchResultCache에서 꺼낸다.
+        * 키는 MemberJpaRepository/MemberQueryRepository.search와 같아서 결과를 같이 쓴다.
+        * 캐시에 없는 같은 검색이 동시에 들어오면 SearchCoalescer가 한번만 실행한다.
+        * 트랜잭션은 SearchCoalescer가 실제로 실행하는 요청에서만 연다.
+        * 캐시 히트나 기다리는 요청은 커넥션을 잡지 않는다.*/
     }
 
     /*이런 복잡한 쿼리는 결국 직접 만들어야 된다.
@@ -107,8 +123,9 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
         return hasText(username) ? member.username.eq(username) : null ;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    /*없는 팀 이름이면 빈 in ()이 되어서 결과가 없다. (Querydsl이 1 = 2로 바꿔준다)*/
+    private BooleanExpression teamIdIn(String teamName) {
+        return hasText(teamName) ? member.team.id.in(teamDictionary.idsOf(teamName)) : null;
     }
 
     private BooleanExpression ageGoe(Integer ageGoe) {
@@ -120,25 +137,11 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
 
 
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        QueryResults<MemberTeamDto> results = memberTeamQuery(condition)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 /**
@@ -149,7 +152,7 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                  * orderBy는 쿼리에서 제거된다.
                  * 2번째로 데이터의 내용과 전체 카운트를 별도로 조회*/
                 .fetchResults();
-        List<MemberTeamDto> content = results.getResults();
+        List<MemberTeamDto> content = MemberSearchTemplates.fillTeamNames(results.getResults(), teamDictionary);
         long total = results.getTotal();
         return new PageImpl<>(content,pageable,total);
         /**
@@ -162,10 +165,9 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
     public List<MemberTeamDto> searchPageSimple2(MemberSearchCondition condition, Pageable pageable) {
 
         JPQLQuery<MemberTeamDto> jpaQuery = from(member)
-                .leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
+                        teamIdIn(condition.getTeamname()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
                 )
@@ -173,15 +175,14 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ));
 
         JPQLQuery<MemberTeamDto> query = getQuerydsl().applyPagination(pageable, jpaQuery);
         /*이건 유틸리티 클래스로
                 * 이렇게 JPQLQuery로 반환받아 넣으면
                 * 이러한 페이징 쿼리를 다 만들어준다.*/
-        List<MemberTeamDto> results = query.fetch();
+        List<MemberTeamDto> results = MemberSearchTemplates.fillTeamNames(query.fetch(), teamDictionary);
         /*이렇게 하면 패치를 바로 할 수 있다.
         * 하지만 치명적인 단점이 있다.
         * Sort는 안된다.
@@ -201,90 +202,177 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition normalized = condition.normalized();
+        List<Object> key = List.of("member-page", normalized, pageable);
+        return searchResultCache.page(key, () -> searchCoalescer.execute(key, () -> {
+            List<MemberTeamDto> content = getMemberTeamDtos(normalized, pageable);
+
+            long total = getCachedTotal(normalized);
+
+
+            return new PageImpl<>(content,pageable,total);
+        }));
+    }
+    /*같은 조건 + 같은 페이지면 컨텐츠와 카운트를 합친 페이지를 통째로 캐시에서 꺼낸다.
+    * 캐시가 비어있을 때 몰린 같은 요청들은 컨텐츠/카운트 쿼리를 한번만 날리고 결과를 나눠 받는다.
+    * 읽기 전용 트랜잭션은 컨텐츠/카운트를 실제로 조회하는 요청에서만 열린다. (SearchCoalescer)*/
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageCapped(MemberSearchCondition condition, Pageable pageable) {
         List<MemberTeamDto> content = getMemberTeamDtos(condition, pageable);
 
-        long total = getTotal(condition);
+        JPAQuery<Long> countQuery = CountQueryDerivation.derive(memberTeamQuery(condition), getEntityManager());
 
+        /*조건이 테이블 대부분에 걸려도 ceiling + 1건까지만 읽는다.
+        * 조건이 아예 없으면 DB 통계의 테이블 로우 추정치로 토탈을 보여준다.*/
+        return CappedCount.page(content, pageable, countQuery, countCeiling,
+                () -> rowCountEstimator.estimate(Member.class));
+    }
 
-        return new PageImpl<>(content,pageable,total);
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageComplexParallel(MemberSearchCondition condition, Pageable pageable) {
+        /*카운트는 별도 쓰레드/트랜잭션에서 먼저 출발시키고
+        * 요청 쓰레드는 컨텐츠를 조회한 뒤 둘을 합친다.
+        * 카운트가 느린 검색 화면에서 응답시간이 max(content, count) 정도로 줄어든다.*/
+        MemberSearchCondition normalized = condition.normalized();
+        return countQueryExecutor.fetchPage(
+                () -> getMemberTeamDtos(normalized, pageable),
+                pageable,
+                () -> getCachedTotal(normalized));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchPageComplexPage(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ))
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+        MemberSearchCondition normalized = condition.normalized();
+        List<MemberTeamDto> content = getMemberTeamDtos(normalized, pageable);
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
+        /*컨텐츠와 카운트 모두 memberTeamQuery + 정규화된 조건으로 만든다.
+        * 팀 이름 조건도 팀 id로 바뀌어 있어서 team 조인 없이 count(member.id)만 남는다.
+        * 컨텐츠만 조인하면 팀이 없는 회원이나 사전과 DB의 차이 때문에 컨텐츠와 카운트가 어긋날 수 있다.*/
 
         /* 이렇게 하면 getPage에서 페이저블과 컨텐츠 사이즈로 판단하여
         * 카운트 쿼리를 호출 안하도록 구현되어있다.*/
-        return PageableExecutionUtils.getPage(content,pageable,countQuery::fetchCount);
+        return PageableExecutionUtils.getPage(content,pageable,
+                () -> getCachedTotal(normalized));
 
     }
 
     private List<MemberTeamDto> getMemberTeamDtos(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
+        List<MemberTeamDto> content = queryMemo.fetch(memberTeamQuery(condition)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize()));
+        return MemberSearchTemplates.fillTeamNames(content, teamDictionary);
+    }
+
+    /*컨텐츠와 카운트가 같이 쓰는 쿼리
+    * 팀 이름 조건을 팀 id로 바꿔서 team 조인 없이 member 테이블만 읽는다.
+    * teamName은 getMemberTeamDtos에서 팀 사전으로 채운다.*/
+    private JPAQuery<MemberTeamDto> memberTeamQuery(MemberSearchCondition condition) {
+        return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
                         member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
+                        member.team.id.as("teamId")
                 ))
                 .from(member)
-                .leftJoin(member.team, team)
                 .where(
                         usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
+                        teamIdIn(condition.getTeamname()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                )
-                .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
-        return content;
+                );
+    }
+
+    /*같은 조건으로 페이지만 넘기는 경우 카운트는 같으니 캐시에서 꺼낸다.
+    * 키와 카운트 쿼리 모두 정규화된 조건으로 만든다.
+    * 키만 정규화하면 " member1 "로 센 0건이 "member1"의 카운트로 저장되기 때문*/
+    private long getCachedTotal(MemberSearchCondition condition) {
+        MemberSearchCondition normalized = condition.normalized();
+        return countCache.get(countKey(normalized), () -> getTotal(normalized));
+    }
+
+    private Object countKey(MemberSearchCondition normalized) {
+        return List.of("member-team-count", normalized);
     }
 
     private long getTotal(MemberSearchCondition condition) {
-        long total = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamname()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
+        long total = CountQueryDerivation.derive(memberTeamQuery(condition), getEntityManager())
                 .fetchCount();
         return total;
     }
+    /*카운트 쿼리는 컨텐츠 쿼리에서 만든다.
+    * 컨텐츠 쿼리에 team 조인이 없으니 member 테이블만 센다.*/
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPageWindow(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchCondition normalized = condition.normalized();
+        JPAQuery<MemberTeamDto> query = memberTeamQuery(normalized)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+
+        /*select ..., count(*) over() from member where ... limit ? offset ?
+        * 로우마다 전체 카운트가 붙어서 나오기 때문에 카운트 쿼리를 따로 날리지 않는다.
+        * offset이 전체를 넘어서 빈 페이지일 때만 카운트로 보정한다.*/
+        Page<MemberTeamDto> page = WindowCountPagination.fetch(query, pageable, () -> getCachedTotal(normalized));
+        MemberSearchTemplates.fillTeamNames(page.getContent(), teamDictionary);
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<MemberTeamDto> searchSlice(MemberSearchCondition condition, Pageable pageable) {
+        JPAQuery<MemberTeamDto> query = memberTeamQuery(condition)
+                .offset(pageable.getOffset());
+
+        /*limit pageSize + 1로 한건 더 읽어서 다음 페이지 여부를 판단한다.
+        * 카운트 쿼리가 없어서 무한 스크롤 클라이언트가 카운트 부하를 만들지 않는다.*/
+        Slice<MemberTeamDto> slice = SlicePagination.fetch(query, pageable);
+        MemberSearchTemplates.fillTeamNames(slice.getContent(), teamDictionary);
+        return slice;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<MemberTeamDto> searchByCursor(MemberSearchCondition condition, String cursor, int size) {
+        JPAQuery<MemberTeamDto> query = memberTeamQuery(condition);
+
+        /*나이순 정렬 + member.id 타이브레이커
+        * 마지막으로 본 (age, id) 다음부터 읽기 때문에
+        * 몇번째 페이지든 offset 없이 같은 비용으로 조회된다.*/
+        CursorPage<MemberTeamDto> page = KeysetPagination.fetch(query, member.age, member.id,
+                KeysetCursor.decode(cursor, Integer::valueOf), Integer::valueOf, size, dto -> KeysetCursor.of(dto.getAge(), dto.getMemberId()));
+        MemberSearchTemplates.fillTeamNames(page.getContent(), teamDictionary);
+        return page;
+    }
+
+    @Override
+    public BulkResult bulkAddAge(MemberSearchCondition condition, int delta) {
+        return bulkOperationExecutor.update(member, member.id, bulkCondition(condition),
+                update -> update.set(member.age, member.age.add(delta)));
+    }
+
+    @Override
+    public BulkResult bulkDelete(MemberSearchCondition condition) {
+        return bulkOperationExecutor.delete(member, member.id, bulkCondition(condition));
+    }
+
+    /*JPQL update/delete에는 조인을 쓸 수 없어서
+    * 팀 이름 조건은 member.team.id in (팀 id 서브쿼리)로 바꾼다.
+    * member.team.id는 member 테이블의 외래키라 조인이 생기지 않는다.*/
+    private Predicate bulkCondition(MemberSearchCondition condition) {
+        return ExpressionUtils.allOf(
+                usernameEq(condition.getUsername()),
+                hasText(condition.getTeamname())
+                        ? member.team.id.in(JPAExpressions.select(team.id).from(team).where(team.name.eq(condition.getTeamname())))
+                        : null,
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe()));
+    }
     /**
      * 1번은 패치 리저트로 토탈 쿼리를 날려주는데
      * 2번은 내가 직접 날리는 것
@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.QueryTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+
+/*회원 검색 쿼리 템플릿 캐시
+ * 검색 조건은 username/teamname/ageGoe/ageLoe가 있냐 없냐로
+ * 쿼리 모양이 2^4 = 16가지 밖에 없다.
+ * 모양별로 한번만 QMemberTeamDto/alias/where절을 조립하고 JPQL로 직렬화해두고
+ * 요청마다는 파라미터 값만 바인딩한다.
+ * 템플릿은 EntityManager와 무관한 문자열이라 static으로 공유한다.
+ *
+ * 팀 이름 조건은 TeamDictionary로 팀 id 목록으로 바꿔서 member.team.id in (...)으로 거른다.
+ * team 조인이 없어서 member 테이블만 읽고 team_id 외래키 인덱스를 탈 수 있다.
+ * 결과의 teamName도 사전에서 채운다.*/
+public final class MemberSearchTemplates {
+
+    private static final Param<String> USERNAME = new Param<>(String.class, "username");
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final Param<Collection<Long>> TEAM_IDS = new Param(Collection.class, "teamIds");
+    private static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    private static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+
+    private static final int HAS_USERNAME = 1;
+    private static final int HAS_TEAMNAME = 1 << 1;
+    private static final int HAS_AGE_GOE = 1 << 2;
+    private static final int HAS_AGE_LOE = 1 << 3;
+
+    private static final Map<Integer, QueryTemplate<MemberTeamDto>> TEMPLATES = new ConcurrentHashMap<>();
+
+    private MemberSearchTemplates() {
+    }
+
+    public static List<MemberTeamDto> search(EntityManager em, TeamDictionary teams, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        List<Long> teamIds = List.of();
+        if ((shape & HAS_TEAMNAME) != 0) {
+            teamIds = teams.idsOf(condition.getTeamname());
+            if (teamIds.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+        /*없는 팀 이름이면 DB에 가지 않아도 결과가 없다.*/
+        QueryTemplate<MemberTeamDto> template = TEMPLATES.computeIfAbsent(shape, s -> compile(s, em));
+
+        Map<Param<?>, Object> bindings = new HashMap<>(4);
+        if ((shape & HAS_USERNAME) != 0) {
+            bindings.put(USERNAME, condition.getUsername());
+        }
+        if ((shape & HAS_TEAMNAME) != 0) {
+            bindings.put(TEAM_IDS, teamIds);
+        }
+        if ((shape & HAS_AGE_GOE) != 0) {
+            bindings.put(AGE_GOE, condition.getAgeGoe());
+        }
+        if ((shape & HAS_AGE_LOE) != 0) {
+            bindings.put(AGE_LOE, condition.getAgeLoe());
+        }
+        return fillTeamNames(template.fetch(em, bindings), teams);
+    }
+
+    /*조인 없이 읽은 결과에 팀 이름을 채운다.
+    * 팀 id를 먼저 모아서 사전을 한번만 찾는다. (사전에 없는 id가 있어도 다시 읽는건 한번)*/
+    public static List<MemberTeamDto> fillTeamNames(List<MemberTeamDto> content, TeamDictionary teams) {
+        Set<Long> teamIds = new HashSet<>();
+        for (MemberTeamDto dto : content) {
+            if (dto.getTeamId() != null) {
+                teamIds.add(dto.getTeamId());
+            }
+        }
+        if (teamIds.isEmpty()) {
+            return content;
+        }
+        Map<Long, String> names = teams.namesOf(teamIds);
+        for (MemberTeamDto dto : content) {
+            dto.setTeamName(dto.getTeamId() == null ? null : names.get(dto.getTeamId()));
+        }
+        return content;
+    }
+
+    /*where절 파라미터 방식과 똑같이 hasText / null 체크로 모양을 정한다.*/
+    static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= HAS_USERNAME;
+        }
+        if (hasText(condition.getTeamname())) {
+            shape |= HAS_TEAMNAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= HAS_AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= HAS_AGE_LOE;
+        }
+        return shape;
+    }
+
+    private static QueryTemplate<MemberTeamDto> compile(int shape, EntityManager em) {
+        JPAQuery<MemberTeamDto> query = new JPAQuery<Void>()
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        member.team.id.as("teamId")
+                ))
+                .from(member)
+                .where(
+                        (shape & HAS_USERNAME) != 0 ? member.username.eq(USERNAME) : null,
+                        (shape & HAS_TEAMNAME) != 0 ? Expressions.booleanOperation(Ops.IN, member.team.id, TEAM_IDS) : null,
+                        (shape & HAS_AGE_GOE) != 0 ? member.age.goe(AGE_GOE) : null,
+                        (shape & HAS_AGE_LOE) != 0 ? member.age.loe(AGE_LOE) : null
+                );
+        return QueryTemplate.compile(query, em);
+    }
+
+    static int cachedShapes() {
+        return TEMPLATES.size();
+    }
+}
@@ -5,11 +5,18 @@ import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.support.BulkResult;
+import study.querydsl.repository.support.CursorPage;
+import study.querydsl.repository.support.FetchPlan;
+import study.querydsl.repository.support.KeysetCursor;
+import study.querydsl.repository.support.PagingMode;
 import study.querydsl.repository.support.Querydsl4RepositorySupport;
 
 import java.util.List;
@@ -23,18 +30,32 @@ import static study.querydsl.entity.QTeam.team;
 public class MemberTestRepository extends Querydsl4RepositorySupport {
     public MemberTestRepository(){
         super(Member.class);
+        registerFetchPlan(new FetchPlan("withTeam", "team"));
     }
+    /*팀까지 같이 읽는 페치 플랜*/
 
+    @Transactional(readOnly = true)
     public List<Member> basicSelect(){
         return select(member)
                 .from(member)
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> basicSelectFrom(){
         return selectFrom(member)
                 .fetch();
     }
+    /*조회만 하는 목록이라 읽기 전용 트랜잭션으로 조회한다.
+    * 세션이 읽기 전용으로 열려서 스냅샷이 없고 엔티티 수만큼의 메모리가 덜 들고 flush 때 비교도 하지 않는다.*/
+    public List<Member> basicSelectWithTeam(){
+        return withFetchGraph(selectFrom(member), "team")
+                .fetch();
+    }
+    /*basicSelect 결과에서 getTeam().getName()을 부르면 팀 프록시를 초기화해야 하는데
+    * 배치 페치로 팀 수와 관계없이 한번에 읽거나
+    * 엔티티 그래프로 처음부터 조인해서 가져온다.*/
+
     /*select와
     * selectfrom
     * 생성시점에 도메인 클래스에 전부 넘기고
@@ -43,6 +64,7 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
     * selectfrom에서는 쿼리 팩토리에서 셀렉트 프럼 활용
     * */
 
+    @Transactional(readOnly = true)
     public Page<Member> searchPageByApplyPage(MemberSearchCondition condition, Pageable pageable){
         JPAQuery<Member> query =selectFrom(member)
                 .leftJoin(member.team,team)
@@ -61,12 +83,17 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
     }
 
     public Page<Member> applyPagination(MemberSearchCondition condition, Pageable pageable) {
-        return applyPagination(pageable, contentQuery -> contentQuery
+        return applyPagination(pageable, contentQuery -> withFetchPlan(contentQuery
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(condition.getUsername()), teamNameEq(condition.getTeamname()), ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())));
+                        ageLoe(condition.getAgeLoe())), "withTeam"));
     }
+    /*withTeam 페치 플랜으로 페이지의 회원과 팀을 한번에 가져온다.
+    * fetchJoin()과 달리 to-one만 조인하니 limit/offset 페이징이 깨지지 않는다.*/
+    /*카운트 쿼리는 컨텐츠 쿼리에서 자동으로 만들어진다.
+    * select(member.id)로 바뀌고 teamname 조건이 없으면 left join team도 빠져서
+    * 카운트 람다를 직접 짜지 않아도 된다.*/
     /*쿼리를 넘겨주고 페이저블을 넘겨주면
     * 쿼리를 apply는 실행시키고
     * 그걸 쿼리팩토리에 넘겨서 jpaQuery를 통해 패치로
@@ -82,21 +109,80 @@ public class MemberTestRepository extends Querydsl4RepositorySupport {
                         teamNameEq(condition.getTeamname()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
-                ),
-                countQuery -> countQuery
-                .select(member.id)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()), teamNameEq(condition.getTeamname()), ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+                )
         );
         /*이렇게 이전보다 쿼리를 훨씬 깔끔하게 내보낼 수 있게 되었다.
-        * 여기서는 페이저블과 컨텐츠쿼리와 카운트 쿼리를 작성해서
-        * 넘기면 된다.
+        * 예전에는 카운트 쿼리 람다도 같이 넘겼는데
+        * 지금은 컨텐츠 쿼리에서 카운트 쿼리를 만들어주니 페이저블과 컨텐츠쿼리만 넘기면 된다.
         * 결국 람다를 활용해서 코드의 유지보수를 늘린 상황
         * */
     }
 
+    public Page<Member> applyPaginationWindow(MemberSearchCondition condition, Pageable pageable) {
+        return applyPagination(pageable, PagingMode.WINDOW_COUNT, contentQuery -> contentQuery
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamname()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())));
+    }
+    /*모드만 WINDOW_COUNT로 넘기면
+    * 컨텐츠 쿼리에 count(*) over()가 붙어서 카운트 쿼리 없이 토탈까지 한번에 가져온다.*/
+
+    public Page<Member> applyPaginationParallel(MemberSearchCondition condition, Pageable pageable) {
+        return applyPagination(pageable, PagingMode.PARALLEL_COUNT, contentQuery -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamname()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())),
+                countQuery -> countQuery
+                        .select(member.id)
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()), teamNameEq(condition.getTeamname()), ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())));
+    }
+    /*카운트 쿼리는 별도 쓰레드의 새 트랜잭션에서 돌기 때문에
+    * 요청 트랜잭션에서 커밋 안된 데이터는 카운트에 잡히지 않는다.*/
+
+    public Slice<Member> applySlicing(MemberSearchCondition condition, Pageable pageable) {
+        return applySlicing(pageable, contentQuery -> contentQuery
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamname()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())));
+    }
+    /*Slice는 카운트 쿼리 람다가 필요 없다.*/
+
+    public CursorPage<Member> searchByCursor(MemberSearchCondition condition, String cursor, int size) {
+        return applyKeysetPagination(size, cursor, member.age, Integer::valueOf, member.id,
+                contentQuery -> contentQuery
+                        .selectFrom(member)
+                        .leftJoin(member.team, team)
+                        .where(usernameEq(condition.getUsername()),
+                                teamNameEq(condition.getTeamname()),
+                                ageGoe(condition.getAgeGoe()),
+                                ageLoe(condition.getAgeLoe())),
+                (Member m) -> KeysetCursor.of(m.getAge(), m.getId()));
+    }
+    /*키셋 페이징도 람다로 컨텐츠 쿼리만 넘기면 된다.
+    * 카운트 쿼리가 없고 (age, id) 커서로 다음 페이지를 찾는다.*/
+
+    public BulkResult renameYoungMembers(int age, String username) {
+        return bulkUpdate(member.age.lt(age), update -> update.set(member.username, username));
+    }
+
+    public BulkResult deleteOlderThan(int age) {
+        return bulkDelete(member.age.gt(age));
+    }
+    /*QuerydslBasicTest의 bulkUpdate/bulkDelete를 지원 클래스로 옮긴 버전
+    * id 구간별로 나눠서 실행하고 flush/clear는 지원 클래스가 알아서 한다.*/
+
     private BooleanExpression ageBetween(int ageLoe, int ageGoe){
         return ageGoe(ageLoe).and(ageGoe(ageGoe));
     }
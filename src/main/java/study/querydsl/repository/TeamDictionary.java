@@ -0,0 +1,164 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.TransactionCallbacks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*팀 이름 <-> id 사전 캐시
+ * 팀은 몇개 안되고 거의 바뀌지 않는데
+ * 회원 검색에서 팀 이름으로 거르려고 매번 member left join team을 했다.
+ * 팀 이름을 먼저 id로 바꿔두면 검색은 member.team_id(외래키) 조건만으로 member 테이블 하나만 읽는다.
+ * 결과의 teamName도 조인 대신 여기서 채운다.
+ *
+ * - 기동이 끝나면 select t.id, t.name from Team t 한번으로 전체를 미리 읽어둔다.
+ *   비워진 뒤에는 처음 쓰는 요청 쓰레드에서 다시 읽고 그 요청의 SQL 통계(SqlStats)에 잡힌다.
+ *   그래서 v1/v3 예산은 사전을 채우는 조회 1번까지 넣어서 잡는다.
+ *   TTL이 지나서 여러 요청이 동시에 만나도 한 요청만 읽고 나머지는 그 결과를 쓴다.
+ * - Team 저장/수정/삭제 이벤트가 오면 비우고, 그 트랜잭션이 끝날 때(커밋/롤백) 한번 더 비운다.
+ *   커밋 전에 다른 요청이 예전 값으로 다시 채울 수 있고
+ *   롤백되면 아직 커밋 안된 팀이 사전에 남을 수 있기 때문
+ * - 다른 인스턴스에서 바뀐 팀은 이벤트가 오지 않으니 TTL이 지나면 다시 읽는다.
+ * - 결과에 사전에 없는 팀 id가 있으면(다른 인스턴스에서 방금 만든 팀 등) 호출당 한번만 다시 읽는다.
+ *   다시 읽은 사전으로 바꿔 끼울 뿐 다른 요청이 쓰는 사전을 비우지는 않고
+ *   miss-reload-interval 안에 읽은 사전이면 다시 읽지 않는다.
+ *   복제본이 늦어서 계속 없는 id가 오더라도 로우마다, 요청마다 팀 전체를 읽지 않게 하기 위해서
+ * - 읽는 도중 무효화되면 읽은 결과는 버린다. (LocalCountCache와 같은 버전 체크)
+ * 팀 이름은 유니크가 아니라서 이름 하나에 id가 여러개일 수 있다.*/
+@Component
+public class TeamDictionary {
+
+    private final EntityManager em;
+    private final long ttlNanos;
+    private final long missReloadIntervalNanos;
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public TeamDictionary(EntityManager em,
+                          @Value("${querydsl.team-dictionary.ttl:60s}") Duration ttl,
+                          @Value("${querydsl.team-dictionary.miss-reload-interval:1s}") Duration missReloadInterval) {
+        this.em = em;
+        this.ttlNanos = ttl.toNanos();
+        this.missReloadIntervalNanos = missReloadInterval.toNanos();
+    }
+
+    /*이름에 해당하는 팀 id들, 없는 이름이면 빈 리스트*/
+    public List<Long> idsOf(String name) {
+        return snapshot().idsByName.getOrDefault(name, List.of());
+    }
+
+    public String nameOf(Long id) {
+        return id == null ? null : namesOf(Set.of(id)).get(id);
+    }
+
+    /*id -> 팀 이름
+    * 검색 결과 한 페이지의 팀 id를 모아서 한번에 찾고
+    * 사전에 없는 id가 있어도 다시 읽는건 한번뿐이다.*/
+    public Map<Long, String> namesOf(Collection<Long> ids) {
+        Snapshot current = snapshot();
+        if (current.namesById.keySet().containsAll(ids)) {
+            return current.namesById;
+        }
+        return reloadForMiss(current).namesById;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        snapshot();
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (!Team.class.isAssignableFrom(event.getEntityType())) {
+            return;
+        }
+        invalidate();
+        TransactionCallbacks.afterCompletionOnce(this, this::invalidate);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (isFresh(current)) {
+                return current;
+            }
+            long startVersion = version.get();
+            Snapshot loaded = load();
+            if (version.get() == startVersion) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.expiresAt - System.nanoTime() > 0;
+    }
+
+    /*동시에 여러 요청이 같은 없는 id를 만나도 한 요청만 다시 읽는다.*/
+    private synchronized Snapshot reloadForMiss(Snapshot missed) {
+        Snapshot current = snapshot;
+        if (current != null && current != missed) {
+            return current;
+        }
+        if (System.nanoTime() - missed.loadedAt < missReloadIntervalNanos) {
+            return missed;
+        }
+        long startVersion = version.get();
+        Snapshot loaded = load();
+        if (version.get() == startVersion) {
+            snapshot = loaded;
+        }
+        return loaded;
+    }
+
+    private Snapshot load() {
+        List<Object[]> rows = em.createQuery("select t.id, t.name from Team t", Object[].class)
+                .getResultList();
+        Map<String, List<Long>> idsByName = new HashMap<>();
+        Map<Long, String> namesById = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            Long id = (Long) row[0];
+            String name = (String) row[1];
+            namesById.put(id, name);
+            idsByName.computeIfAbsent(name, n -> new ArrayList<>()).add(id);
+        }
+        return new Snapshot(idsByName, namesById, System.nanoTime(), ttlNanos);
+    }
+
+    private static class Snapshot {
+        private final Map<String, List<Long>> idsByName;
+        private final Map<Long, String> namesById;
+        private final long loadedAt;
+        private final long expiresAt;
+
+        private Snapshot(Map<String, List<Long>> idsByName, Map<Long, String> namesById, long loadedAt, long ttlNanos) {
+            this.idsByName = idsByName;
+            this.namesById = namesById;
+            this.loadedAt = loadedAt;
+            this.expiresAt = loadedAt + ttlNanos;
+        }
+    }
+}
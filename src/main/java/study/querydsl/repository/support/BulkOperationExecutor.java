@@ -0,0 +1,137 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/*청크 단위 벌크 update/delete
+ * update ... where 조건 한방으로 몇백만건을 바꾸면
+ * 그 로우들의 락이 커밋될 때까지 전부 잡혀 있어서 다른 트랜잭션이 줄줄이 기다린다.
+ * 그래서 조건에 걸리는 id를 chunkSize개씩 키셋(id > 마지막 id)으로 읽고
+ * 그 첫 id ~ 마지막 id 구간마다 update/delete를 나눠서 실행한다.
+ * 구간을 min ~ max를 chunkSize씩 잘라서 만들면 id가 듬성듬성할 때(pooled-lo 할당, 삭제, 여러 인스턴스)
+ * 대상이 없는 빈 update/delete 트랜잭션이 잔뜩 나간다.
+ *
+ * - 바깥 트랜잭션이 없으면 청크마다 따로 커밋되어 락을 잡는 시간이 청크 하나 분량으로 짧아진다.
+ *   바깥 트랜잭션이 있으면 거기에 참여한다. (락은 바깥 트랜잭션이 끝날 때 풀린다)
+ * - 벌크 연산은 영속성 컨텍스트를 거치지 않으므로
+ *   청크 전에 flush(쓰기 지연된 변경을 먼저 반영)하고 청크 후에 clear(옛날 값이 남은 엔티티 제거)한다.
+ * - 엔티티 리스너도 거치지 않아서 EntityChangedEvent를 직접 발행한다. (카운트 캐시 무효화)
+ * - 2차 캐시는 하이버네이트가 JPQL 벌크 연산의 대상 리전을 잠갔다가 트랜잭션이 끝날 때 비운다.
+ *   (READ_WRITE 리전은 잠긴 동안 다른 트랜잭션이 옛날 값을 다시 넣지 못한다)
+ *   청크마다 리전 전체를 따로 또 비우면 대상과 상관없는 캐시까지 청크 수만큼 날아가서 하지 않는다.
+ * - 끝 id는 시작 시점의 max(id)로 고정하고 키셋은 앞으로만 가므로
+ *   age = age + 1 처럼 조건 컬럼을 바꾸는 update도 로우당 한번만 적용된다.*/
+@Component
+public class BulkOperationExecutor {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final int chunkSize;
+
+    public BulkOperationExecutor(EntityManager em, PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher publisher,
+                                 @Value("${querydsl.bulk.chunk-size:1000}") int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Bulk chunk size must be greater than zero");
+        }
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkResult update(EntityPath<?> root, NumberPath<Long> id, Predicate where,
+                             Consumer<JPAUpdateClause> assignments) {
+        return execute(root, id, where, range -> {
+            JPAUpdateClause update = new JPAUpdateClause(em, root);
+            assignments.accept(update);
+            return update.where(range).execute();
+        });
+    }
+
+    public BulkResult delete(EntityPath<?> root, NumberPath<Long> id, Predicate where) {
+        return execute(root, id, where, range -> new JPADeleteClause(em, root).where(range).execute());
+    }
+
+    private BulkResult execute(EntityPath<?> root, NumberPath<Long> id, Predicate where,
+                               ToLongFunction<Predicate> chunk) {
+        long start = System.nanoTime();
+        Long max = transactionTemplate.execute(status -> {
+            em.flush();
+            return new JPAQuery<Void>(em).select(id.max()).from(root).where(where).fetchOne();
+        });
+        if (max == null) {
+            return new BulkResult(0, 0, Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        long affectedRows = 0;
+        int chunks = 0;
+        Long last = null;
+        while (true) {
+            Long after = last;
+            Chunk result = transactionTemplate.execute(status -> {
+                em.flush();
+                List<Long> ids = new JPAQuery<Void>(em)
+                        .select(id)
+                        .from(root)
+                        .where(where, after == null ? null : id.gt(after), id.loe(max))
+                        .orderBy(id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                Long first = ids.get(0);
+                Long lastId = ids.get(ids.size() - 1);
+                long affected = chunk.applyAsLong(ExpressionUtils.allOf(where, id.between(first, lastId)));
+                em.clear();
+                if (affected > 0) {
+                    publisher.publishEvent(new EntityChangedEvent(root.getType()));
+                }
+                return new Chunk(affected, lastId, ids.size() == chunkSize);
+            });
+            if (result == null) {
+                break;
+            }
+            affectedRows += result.affectedRows;
+            chunks++;
+            if (!result.more) {
+                break;
+            }
+            last = result.lastId;
+        }
+        return new BulkResult(affectedRows, chunks, Duration.ofNanos(System.nanoTime() - start));
+    }
+    /*청크 경계를 데이터에서 가져오니 청크마다 최소 한건은 대상이 있다.
+    * 덜 찬 청크가 나오면 더 읽을 id가 없으니 끝낸다.*/
+
+    private static class Chunk {
+        private final long affectedRows;
+        private final long lastId;
+        private final boolean more;
+
+        private Chunk(long affectedRows, long lastId, boolean more) {
+            this.affectedRows = affectedRows;
+            this.lastId = lastId;
+            this.more = more;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Duration;
+
+/*청크 단위 벌크 update/delete 결과
+ * 영향받은 로우 수, 실행한 청크(트랜잭션) 수, 전체 걸린 시간을 담는다.*/
+@Getter
+@ToString
+public class BulkResult {
+
+    private final long affectedRows;
+    private final int chunks;
+    private final Duration elapsed;
+
+    public BulkResult(long affectedRows, int chunks, Duration elapsed) {
+        this.affectedRows = affectedRows;
+        this.chunks = chunks;
+        this.elapsed = elapsed;
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+/*상한이 있는 카운트
+ * 검색 조건이 테이블 대부분에 걸리면 정확한 count(*)는 결국 전체를 스캔한다.
+ * 화면에는 "N건 이상"만 보여줘도 충분하니 ceiling + 1건까지만 읽고 멈춘다.
+ *
+ * JPQL은 from절 서브쿼리(select count(*) from (... limit ?))를 만들 수 없어서
+ * 상수 1만 select하고 limit ceiling + 1로 잘라서 로우 수를 센다.
+ * 최악의 경우에도 ceiling + 1개의 로우만 읽는다.*/
+public final class CappedCount {
+
+    private CappedCount() {
+    }
+
+    /*ceiling보다 많으면 ceiling + 1을 반환한다.*/
+    public static long count(JPAQuery<?> countQuery, long ceiling) {
+        if (ceiling < 1) {
+            throw new IllegalArgumentException("Count ceiling must be greater than zero");
+        }
+        return countQuery.clone()
+                .select(Expressions.numberTemplate(Integer.class, "1"))
+                .offset(0)
+                .limit(ceiling + 1)
+                .fetch()
+                .size();
+    }
+
+    /*컨텐츠만으로 토탈을 알 수 있으면(첫 페이지가 size보다 작거나 마지막 페이지) 카운트를 생략한다.
+     * 상한을 넘으면 estimate가 있고 조건이 없는 전체 조회일 때만 DB 통계 추정치를 쓰고
+     * 그 외에는 ceiling을 토탈로 두고 totalCapped로 표시한다.*/
+    public static <T> CappedPage<T> page(List<T> content, Pageable pageable, JPAQuery<?> countQuery, long ceiling,
+                                         Supplier<OptionalLong> estimate) {
+        if (!content.isEmpty() && content.size() < pageable.getPageSize()) {
+            return new CappedPage<>(content, pageable, pageable.getOffset() + content.size(), false, false);
+        }
+        long counted = count(countQuery, ceiling);
+        if (counted <= ceiling) {
+            return new CappedPage<>(content, pageable, counted, false, false);
+        }
+        if (estimate != null && countQuery.getMetadata().getWhere() == null) {
+            OptionalLong estimated = estimate.get();
+            if (estimated.isPresent() && estimated.getAsLong() > ceiling) {
+                return new CappedPage<>(content, pageable, estimated.getAsLong(), false, true);
+            }
+        }
+        return new CappedPage<>(content, pageable, ceiling, true, false);
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.repository.support;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/*전체 카운트가 상한(ceiling)을 넘었는지 알려주는 페이지
+ * totalCapped가 true면 totalElements는 정확한 값이 아니라
+ * "ceiling건 이상"이라는 뜻이다.
+ * estimated가 true면 DB 통계 기반의 추정치다.*/
+public class CappedPage<T> extends PageImpl<T> {
+
+    private final boolean totalCapped;
+    private final boolean estimated;
+
+    public CappedPage(List<T> content, Pageable pageable, long total, boolean totalCapped, boolean estimated) {
+        super(content, pageable, total);
+        this.totalCapped = totalCapped;
+        this.estimated = estimated;
+    }
+
+    public boolean isTotalCapped() {
+        return totalCapped;
+    }
+
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    /*상한에 걸렸으면 그 뒤에도 데이터가 더 있을 수 있으니
+    * 페이지가 꽉 차 있는 한 다음 페이지가 있다고 본다.*/
+    @Override
+    public boolean hasNext() {
+        return super.hasNext() || (totalCapped && getNumberOfElements() == getSize());
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.repository.support;
+
+import java.util.function.LongSupplier;
+
+/*카운트 쿼리 결과 캐시
+ * 같은 조건으로 페이지만 넘기는 경우 카운트는 매번 같으니
+ * 짧은 시간 동안 재사용해서 카운트 스캔을 줄인다.
+ * 구현체를 바꿔 끼울 수 있도록 인터페이스로 둔다.*/
+public interface CountCache {
+
+    /*캐시를 쓰지 않는 구현 (항상 카운트 쿼리 실행)*/
+    CountCache NONE = new CountCache() {
+        @Override
+        public long get(Object key, LongSupplier countQuery) {
+            return countQuery.getAsLong();
+        }
+
+        @Override
+        public void invalidateAll() {
+        }
+
+        @Override
+        public CountCacheStats stats() {
+            return new CountCacheStats(0, 0, 0, 0);
+        }
+    };
+
+    long get(Object key, LongSupplier countQuery);
+
+    void invalidateAll();
+
+    CountCacheStats stats();
+}
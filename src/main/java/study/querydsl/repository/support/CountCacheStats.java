@@ -0,0 +1,22 @@
+package study.querydsl.repository.support;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/*카운트 캐시 통계
+ * hits가 곧 아낀 카운트 쿼리 수다.*/
+@Getter
+@ToString
+@AllArgsConstructor
+public class CountCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
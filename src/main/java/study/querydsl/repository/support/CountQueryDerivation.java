@@ -0,0 +1,183 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.DefaultQueryMetadata;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.MapExpression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.ParamExpression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.core.types.TemplateExpression;
+import com.querydsl.core.types.Visitor;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*컨텐츠 쿼리로부터 최적화된 카운트 쿼리를 만든다.
+ * 카운트에는 영향이 없는데 비용만 드는 부분을 걷어낸다.
+ *  - order by 제거
+ *  - projection 제거 -> 루트 엔티티의 id만 센다. (count(member.id))
+ *  - 조건(where/group by/having/다른 조인)에서 쓰지 않는 left join 제거
+ *
+ * left join은 to-one 연관관계(member.team)일 때만 제거한다.
+ * to-one left join은 로우 수를 바꾸지 않지만
+ * 컬렉션(to-many) 조인이나 연관관계 없는 세타 조인은 로우가 늘어날 수 있어서 남긴다.
+ * distinct / group by가 있는 쿼리는 카운트 의미가 달라지므로 order by와 limit만 걷어낸다.*/
+public final class CountQueryDerivation {
+
+    private CountQueryDerivation() {
+    }
+
+    public static JPAQuery<Long> derive(JPAQuery<?> contentQuery, EntityManager em) {
+        QueryMetadata source = contentQuery.getMetadata();
+        if (source.isDistinct() || !source.getGroupBy().isEmpty()) {
+            return stripOrderAndPaging(contentQuery, em);
+        }
+
+        List<JoinExpression> joins = source.getJoins();
+        Set<Expression<?>> used = new HashSet<>();
+        collect(source.getWhere(), used);
+        collect(source.getHaving(), used);
+
+        /*뒤의 조인은 앞의 alias만 참조할 수 있어서 역순으로 한번만 훑으면 된다.*/
+        List<JoinExpression> kept = new ArrayList<>();
+        for (int i = joins.size() - 1; i >= 0; i--) {
+            JoinExpression join = joins.get(i);
+            if (i > 0 && isRemovable(join, used)) {
+                continue;
+            }
+            kept.add(0, join);
+            collect(join.getTarget(), used);
+            collect(join.getCondition(), used);
+        }
+
+        DefaultQueryMetadata metadata = new DefaultQueryMetadata();
+        for (JoinExpression join : kept) {
+            metadata.addJoin(join.getType(), join.getTarget());
+            if (join.getCondition() != null) {
+                metadata.addJoinCondition(join.getCondition());
+            }
+        }
+        metadata.addWhere(source.getWhere());
+        for (Map.Entry<ParamExpression<?>, Object> param : source.getParams().entrySet()) {
+            setParam(metadata, param.getKey(), param.getValue());
+        }
+        metadata.setProjection(idPath(kept.get(0).getTarget(), em));
+        return new JPAQuery<>(em, metadata);
+    }
+
+    private static JPAQuery<Long> stripOrderAndPaging(JPAQuery<?> contentQuery, EntityManager em) {
+        QueryMetadata metadata = contentQuery.getMetadata().clone();
+        metadata.clearOrderBy();
+        metadata.setModifiers(QueryModifiers.EMPTY);
+        return new JPAQuery<>(em, metadata);
+    }
+
+    private static boolean isRemovable(JoinExpression join, Set<Expression<?>> used) {
+        if (join.getType() != JoinType.LEFTJOIN || !(join.getTarget() instanceof Operation<?> alias)
+                || alias.getOperator() != Ops.ALIAS) {
+            return false;
+        }
+        Expression<?> association = alias.getArg(0);
+        boolean toOne = association instanceof Path
+                && !(association instanceof CollectionExpression)
+                && !(association instanceof MapExpression);
+        return toOne && !used.contains(alias.getArg(1));
+    }
+
+    /*루트 엔티티(from절)의 식별자 경로, 예) member.id*/
+    private static Expression<?> idPath(Expression<?> from, EntityManager em) {
+        EntityPath<?> root = (EntityPath<?>) from;
+        EntityType<?> entityType = em.getMetamodel().entity(root.getType());
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        return new PathBuilder<>(root.getType(), root.getMetadata()).get(idName);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void setParam(DefaultQueryMetadata metadata, ParamExpression<T> param, Object value) {
+        metadata.setParam(param, (T) value);
+    }
+
+    private static void collect(Expression<?> expr, Set<Expression<?>> roots) {
+        if (expr != null) {
+            expr.accept(RootCollector.INSTANCE, roots);
+        }
+    }
+
+    /*표현식 안에서 쓰인 경로의 루트(alias)를 모은다. 예) team.name -> team*/
+    private static final class RootCollector implements Visitor<Void, Set<Expression<?>>> {
+
+        private static final RootCollector INSTANCE = new RootCollector();
+
+        @Override
+        public Void visit(Constant<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(FactoryExpression<?> expr, Set<Expression<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                collect(arg, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(Operation<?> expr, Set<Expression<?>> roots) {
+            for (Expression<?> arg : expr.getArgs()) {
+                collect(arg, roots);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(ParamExpression<?> expr, Set<Expression<?>> roots) {
+            return null;
+        }
+
+        @Override
+        public Void visit(Path<?> expr, Set<Expression<?>> roots) {
+            roots.add(expr.getRoot());
+            return null;
+        }
+
+        @Override
+        public Void visit(SubQueryExpression<?> expr, Set<Expression<?>> roots) {
+            QueryMetadata metadata = expr.getMetadata();
+            for (JoinExpression join : metadata.getJoins()) {
+                collect(join.getTarget(), roots);
+                collect(join.getCondition(), roots);
+            }
+            collect(metadata.getWhere(), roots);
+            collect(metadata.getHaving(), roots);
+            collect(metadata.getProjection(), roots);
+            return null;
+        }
+
+        @Override
+        public Void visit(TemplateExpression<?> expr, Set<Expression<?>> roots) {
+            for (Object arg : expr.getArgs()) {
+                if (arg instanceof Expression<?> argExpr) {
+                    collect(argExpr, roots);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package study.querydsl.repository.support;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/*카운트 쿼리 병렬 실행기
+ * 컨텐츠 쿼리는 요청 쓰레드에서, 카운트 쿼리는 별도 쓰레드에서 동시에 실행한다.
+ * 카운트 쪽은 REQUIRES_NEW 읽기 전용 트랜잭션으로 감싸서
+ * 자기만의 영속성 컨텍스트(커넥션)를 쓰도록 한다.
+ * 스프링이 주입하는 EntityManager는 프록시라서
+ * 실행되는 쓰레드의 트랜잭션에 바인딩된 진짜 EntityManager로 라우팅된다.
+ *
+ * 요청 하나가 커넥션을 2개(요청 트랜잭션 + 카운트 트랜잭션) 쓰기 때문에
+ * 대기열은 count-queue-size로 제한한다.
+ * 쓰레드와 대기열이 다 차 있으면 기다리지 않고 요청 쓰레드에서 바로 센다.
+ * 이때는 별도 트랜잭션 없이 요청 트랜잭션(커넥션 1개) 안에서 센다.
+ * 카운트가 필요없는 페이지면 띄워둔 카운트를 취소해서
+ * 아직 시작하지 않은 카운트가 커넥션을 잡지 않게 한다.
+ *
+ * 주의) 카운트는 다른 트랜잭션이라 요청 트랜잭션에서 아직 커밋하지 않은 변경은 보이지 않는다.
+ * 조회 전용 화면에서만 쓰는게 좋다.*/
+@Component
+public class CountQueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong inlineCounts = new AtomicLong();
+
+    public CountQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.paging.count-threads:4}") int countThreads,
+                              @Value("${querydsl.paging.count-queue-size:16}") int countQueueSize) {
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(countThreads, countThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(countQueueSize), runnable -> {
+            Thread thread = new Thread(runnable, "count-query-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /*대기열이 꽉 차 있으면 RejectedExecutionException*/
+    public CompletableFuture<Long> countAsync(LongSupplier countQuery) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            /*대기열에 있는 동안 취소됐으면 트랜잭션(커넥션)을 열지 않는다.*/
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(transactionTemplate.execute(status -> countQuery.getAsLong()));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /*카운트를 먼저 띄워놓고 컨텐츠를 조회한 다음 합친다.
+     * 응답 시간이 content + count 에서 max(content, count)로 줄어든다.
+     * 카운트가 필요없는 페이지(첫 페이지가 size보다 작은 경우 등)는 결과를 기다리지 않고 취소한다.*/
+    public <T> Page<T> fetchPage(Supplier<List<T>> contentQuery, Pageable pageable, LongSupplier countQuery) {
+        CompletableFuture<Long> total;
+        try {
+            total = countAsync(countQuery);
+        } catch (RejectedExecutionException e) {
+            inlineCounts.incrementAndGet();
+            return PageableExecutionUtils.getPage(contentQuery.get(), pageable, countQuery);
+        }
+        List<T> content;
+        try {
+            content = contentQuery.get();
+        } catch (RuntimeException e) {
+            total.cancel(true);
+            throw e;
+        }
+        AtomicBoolean used = new AtomicBoolean();
+        Page<T> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            used.set(true);
+            return join(total);
+        });
+        if (!used.get()) {
+            total.cancel(true);
+        }
+        return page;
+    }
+
+    private long join(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /*쓰레드 풀이 밀려서 요청 쓰레드에서 직접 센 횟수*/
+    public long getInlineCounts() {
+        return inlineCounts.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,24 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/*키셋 페이징 결과
+ * 전체 카운트 대신 다음 페이지를 요청할 커서만 돌려준다.
+ * 마지막 페이지면 nextCursor는 null이다.*/
+@Getter
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+}
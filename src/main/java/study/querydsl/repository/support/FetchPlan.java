@@ -0,0 +1,31 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/*이름 붙은 페치 플랜
+ * 쿼리마다 fetchJoin()을 손으로 넣는 대신 "어떤 연관관계를 같이 읽을지"를 이름으로 등록해두고
+ * Querydsl4RepositorySupport.withFetchPlan(query, 이름)으로 아무 쿼리에나 붙인다.
+ * 플랜은 경로 목록에 이름만 붙인 것이고 그래프는 withFetchGraph가 같은 규칙으로 만든다.
+ *
+ * - to-one(member.team)은 fetch graph로 조인해서 같이 읽는다.
+ *   로우 수가 늘지 않아서 limit/offset 페이징이 그대로 DB에서 동작한다.
+ * - 컬렉션(team.members)은 플랜에 넣을 수 없다. (withFetchGraph가 IllegalArgumentException)
+ *   컬렉션을 조인하면 로우가 늘어나서 하이버네이트가 메모리에서 페이징하기 때문
+ *   플랜 없이도 처음 접근할 때 default_batch_fetch_size(@BatchSize)만큼 in (...)으로 한번에 읽는다.
+ * 경로는 to-one만 "team", "team.xxx" 처럼 두단계까지 쓸 수 있다.*/
+@Getter
+public class FetchPlan {
+
+    private final String name;
+    private final List<String> attributePaths;
+
+    public FetchPlan(String name, String... attributePaths) {
+        if (name == null || attributePaths.length == 0) {
+            throw new IllegalArgumentException("Fetch plan requires a name and at least one attribute path");
+        }
+        this.name = name;
+        this.attributePaths = List.of(attributePaths);
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.repository.support;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/*클라이언트가 넘긴 커서가 깨져 있을 때
+ * 서버 오류가 아니라 잘못된 요청이라 400으로 응답한다.*/
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
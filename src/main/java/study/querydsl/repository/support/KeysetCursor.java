@@ -0,0 +1,61 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/*키셋(seek) 페이징에서 사용하는 커서
+ * 마지막으로 본 정렬 키 + 식별자(id) 타이브레이커를 담는다.
+ * 클라이언트에는 Base64 문자열로 감싸서 내보내기 때문에
+ * 내부 구조를 몰라도 다음 요청에 그대로 넘기기만 하면 된다.*/
+@Getter
+public class KeysetCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final String key;
+    private final Long id;
+
+    private KeysetCursor(String key, Long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static KeysetCursor of(Object key, Long id) {
+        if (key == null || id == null) {
+            throw new IllegalArgumentException("Keyset cursor requires both sort key and id");
+        }
+        return new KeysetCursor(String.valueOf(key), id);
+    }
+
+    public String encode() {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*커서가 없으면 첫 페이지이므로 null을 반환한다.
+     * 정렬 키에 구분자가 들어가도 id는 항상 마지막이라 lastIndexOf로 자른다.
+     * 정렬 키를 keyParser로 읽어볼 수 있는지까지 확인한다.
+     * 숫자 키 자리에 문자가 오는 등 깨진 커서는 모두 InvalidCursorException(400)이 된다.*/
+    public static KeysetCursor decode(String cursor, Function<String, ?> keyParser) {
+        if (!StringUtils.hasText(cursor)) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idx = raw.lastIndexOf(SEPARATOR);
+            if (idx < 0) {
+                throw new IllegalArgumentException("Invalid keyset cursor: " + cursor);
+            }
+            String key = raw.substring(0, idx);
+            keyParser.apply(key);
+            return new KeysetCursor(key, Long.valueOf(raw.substring(idx + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid keyset cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/*키셋(seek) 페이징
+ * offset은 앞의 로우를 전부 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+ * 대신 마지막으로 본 (정렬키, id) 다음부터 읽으면
+ * 인덱스를 타고 바로 시작 위치로 가기 때문에 N번째 페이지도 첫 페이지와 비용이 같다.
+ *
+ * JPQL은 (a, b) > (?, ?) 같은 row value 비교를 지원하지 않아서
+ * a > ? or (a = ? and b > ?) 로 풀어서 만든다.
+ * 카운트 쿼리는 날리지 않고 size + 1개를 읽어서 다음 페이지 여부만 판단한다.*/
+public final class KeysetPagination {
+
+    private KeysetPagination() {
+    }
+
+    public static <T, K extends Comparable> CursorPage<T> fetch(JPAQuery<T> query,
+                                                                 ComparableExpressionBase<K> sortKey,
+                                                                 NumberPath<Long> id,
+                                                                 KeysetCursor cursor,
+                                                                 Function<String, K> keyParser,
+                                                                 int size,
+                                                                 Function<T, KeysetCursor> cursorOf) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        if (cursor != null) {
+            query.where(after(sortKey, id, keyParser.apply(cursor.getKey()), cursor.getId()));
+        }
+        List<T> rows = query
+                .orderBy(sortKey.asc(), id.asc())
+                .limit(size + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content, size, hasNext, nextCursor);
+    }
+
+    /*(sortKey, id) > (lastKey, lastId)*/
+    public static <K extends Comparable> BooleanExpression after(Expression<K> sortKey, NumberPath<Long> id,
+                                                                 K lastKey, Long lastId) {
+        Expression<K> key = Expressions.constant(lastKey);
+        return Expressions.booleanOperation(Ops.GT, sortKey, key)
+                .or(Expressions.booleanOperation(Ops.EQ, sortKey, key).and(id.gt(lastId)));
+    }
+}
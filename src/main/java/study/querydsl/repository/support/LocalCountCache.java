@@ -0,0 +1,135 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.event.EventListener;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*로컬 메모리 카운트 캐시 (TTL + LRU 크기 제한)
+ * Member/Team이 바뀌면 전체를 비운다.
+ * 카운트는 member left join team 기준이라 어느 한쪽만 바뀌어도 결과가 달라질 수 있다.
+ *
+ * 변경 트랜잭션이 커밋되기 전에 다른 트랜잭션이 예전 카운트를 다시 캐싱할 수 있어서
+ * 변경 시점과 트랜잭션이 끝나는 시점 두번 비운다.
+ * 카운트를 읽는 도중 무효화가 일어나면 그 결과는 캐싱하지 않는다.
+ *
+ * 비우는건 버전만 올리고 버전이 다른 항목은 꺼낼 때 버린다.
+ * 대량 저장은 로우마다 이벤트가 오기 때문에 이벤트마다 맵 전체를 비우지 않는다.
+ * 버전이 바뀐 뒤 처음 넣을 때(또는 통계를 볼 때) 한번 옛날 버전/만료된 항목을 정리해서
+ * 다시 조회되지 않는 항목이 맵과 size 통계에 남지 않게 한다.*/
+public class LocalCountCache implements CountCache, MeterBinder {
+
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<Object, CachedCount> entries;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long purgedVersion;
+
+    public LocalCountCache(Duration ttl, int maxSize) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedCount> eldest) {
+                boolean evict = size() > LocalCountCache.this.maxSize;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    @Override
+    public long get(Object key, LongSupplier countQuery) {
+        long now = System.nanoTime();
+        long startVersion = version.get();
+        synchronized (entries) {
+            CachedCount entry = entries.get(key);
+            if (entry != null && entry.version == startVersion && entry.expiresAt - now > 0) {
+                hits.incrementAndGet();
+                return entry.count;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+
+        long count = countQuery.getAsLong();
+        synchronized (entries) {
+            if (version.get() == startVersion) {
+                purgeStale(startVersion);
+                entries.put(key, new CachedCount(count, startVersion, System.nanoTime() + ttlNanos));
+            }
+        }
+        return count;
+    }
+
+    /*entries 락 안에서 부른다. 버전마다 한번만 전체를 돈다.*/
+    private void purgeStale(long currentVersion) {
+        if (purgedVersion == currentVersion) {
+            return;
+        }
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.version != currentVersion || entry.expiresAt - now <= 0);
+        purgedVersion = currentVersion;
+    }
+
+    @Override
+    public void invalidateAll() {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        invalidateAll();
+        TransactionCallbacks.afterCompletionOnce(this, this::invalidateAll);
+    }
+
+    @Override
+    public CountCacheStats stats() {
+        synchronized (entries) {
+            purgeStale(version.get());
+            return new CountCacheStats(hits.get(), misses.get(), evictions.get(), entries.size());
+        }
+    }
+
+    /*액추에이터 /actuator/metrics/querydsl.count.cache.* 로 확인*/
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.count.cache.hits", hits, AtomicLong::get)
+                .description("Count queries answered from the cache")
+                .register(registry);
+        FunctionCounter.builder("querydsl.count.cache.misses", misses, AtomicLong::get)
+                .description("Count queries executed against the database")
+                .register(registry);
+        FunctionCounter.builder("querydsl.count.cache.evictions", evictions, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("querydsl.count.cache.size", this, cache -> cache.stats().getSize())
+                .register(registry);
+    }
+
+    private static class CachedCount {
+        private final long count;
+        private final long version;
+        private final long expiresAt;
+
+        private CachedCount(long count, long version, long expiresAt) {
+            this.count = count;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package study.querydsl.repository.support;
+
+/*페이지 조회 시 전체 카운트를 어떻게 구할지 선택하는 모드*/
+public enum PagingMode {
+    /*컨텐츠 쿼리와 별도의 카운트 쿼리 (기존 방식, 2번 왕복)*/
+    COUNT_QUERY,
+    /*count(*) over() 윈도우 함수로 컨텐츠와 토탈을 한번에 조회 (1번 왕복)*/
+    WINDOW_COUNT,
+    /*카운트 쿼리를 별도 커넥션/트랜잭션에서 컨텐츠 쿼리와 동시에 실행*/
+    PARALLEL_COUNT,
+    /*ceiling + 1건까지만 세고 넘으면 "ceiling건 이상"으로 표시 (CappedPage)*/
+    CAPPED_COUNT,
+    /*CAPPED_COUNT + 조건 없는 전체 조회는 DB 통계 추정치로 토탈 표시*/
+    ESTIMATED_COUNT
+}
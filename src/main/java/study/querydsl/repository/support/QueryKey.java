@@ -0,0 +1,36 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/*쿼리를 캐시 키로 쓸 때의 스냅샷
+ * JPAQuery의 메타데이터(DefaultQueryMetadata)는 where/limit 등을 붙일 때마다 바뀌는 객체라
+ * 그대로 맵 키로 넣으면 나중에 쿼리가 바뀌는 순간 해시가 달라져서 항목을 다시 찾을 수 없다.
+ * 그래서 직렬화한 JPQL + 바인딩 값 + 파라미터 + limit/offset을 복사해서 키로 쓴다.*/
+public final class QueryKey {
+
+    private QueryKey() {
+    }
+
+    public static Object of(JPAQuery<?> query) {
+        return of(query, serialize(query));
+    }
+
+    public static Object of(JPAQuery<?> query, JPQLSerializer serializer) {
+        QueryMetadata metadata = query.getMetadata();
+        return List.of(serializer.toString(), new ArrayList<>(serializer.getConstants()),
+                new HashMap<>(metadata.getParams()), metadata.getModifiers());
+    }
+
+    public static JPQLSerializer serialize(JPAQuery<?> query) {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT);
+        serializer.serialize(query.getMetadata(), false, null);
+        return serializer;
+    }
+}
@@ -0,0 +1,121 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAQuery;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*트랜잭션 범위 쿼리 결과 메모이제이션
+ * 한 트랜잭션(요청) 안에서 같은 JPQL + 같은 바인딩 값으로 조회를 두번 하면
+ * 중복 쿼리로 보고 경고 로그를 남기고 카운터를 올린다.
+ *
+ * - 읽기 전용 트랜잭션에서는 첫번째 결과를 그대로 돌려주고 DB에 다시 가지 않는다.
+ * - 쓰기 트랜잭션에서는 사이에 데이터가 바뀔 수 있으니 경고만 하고 다시 실행한다.
+ * - 트랜잭션 밖에서는 아무것도 하지 않는다.
+ * - Member/Team 변경 이벤트(벌크 연산 포함)가 오면 현재 트랜잭션의 메모를 비운다.
+ * 트랜잭션이 끝나면 메모도 같이 사라진다.
+ *
+ * /actuator/metrics/querydsl.query.duplicates 로 중복 쿼리 수를 확인한다.*/
+@Slf4j
+@Component
+public class QueryMemo implements MeterBinder {
+
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /*트랜잭션 밖이면 직렬화도 하지 않고 바로 실행한다.*/
+    public <T> List<T> fetch(JPAQuery<T> query) {
+        if (currentMemo() == null) {
+            return query.fetch();
+        }
+        JPQLSerializer serializer = QueryKey.serialize(query);
+        return fetch(QueryKey.of(query, serializer), serializer.toString(), query::fetch);
+    }
+
+    /*Querydsl이 아닌 조회(미리 만든 JPQL 템플릿 등)는 키를 직접 넘긴다.*/
+    @SuppressWarnings("unchecked")
+    public <T> List<T> fetch(Object key, String description, Supplier<List<T>> query) {
+        Map<Object, List<?>> memo = currentMemo();
+        if (memo == null) {
+            return query.get();
+        }
+        if (memo.containsKey(key)) {
+            long count = duplicates.incrementAndGet();
+            log.warn("Duplicate query in transaction (total {}): {}", count, description);
+            List<?> cached = memo.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return (List<T>) cached;
+            }
+        }
+        List<T> result = query.get();
+        memo.put(key, TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? Collections.unmodifiableList(new ArrayList<>(result)) : null);
+        return result;
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        Map<Object, List<?>> memo = currentMemoIfBound();
+        if (memo != null && !memo.isEmpty()) {
+            memo.clear();
+        }
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.query.duplicates", duplicates, AtomicLong::get)
+                .description("Identical queries executed more than once in one transaction")
+                .register(registry);
+        FunctionCounter.builder("querydsl.query.memo.hits", hits, AtomicLong::get)
+                .description("Duplicate read-only queries answered from the transaction memo")
+                .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, List<?>> currentMemoIfBound() {
+        return (Map<Object, List<?>>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    /*트랜잭션 리소스로 메모를 붙여두고 트랜잭션이 끝나면 떼어낸다.*/
+    private Map<Object, List<?>> currentMemo() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Object, List<?>> memo = currentMemoIfBound();
+        if (memo == null) {
+            memo = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, memo);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(QueryMemo.this);
+                }
+            });
+        }
+        return memo;
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.impl.JPAProvider;
+import com.querydsl.jpa.impl.JPAQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*미리 JPQL로 직렬화해둔 쿼리 템플릿
+ * Querydsl은 fetch()할 때마다 표현식 트리를 JPQL 문자열로 다시 직렬화한다.
+ * 값만 다르고 모양(조건 조합)이 같은 쿼리라면
+ * 값 자리를 Param으로 만들어서 한번만 직렬화해두고
+ * 요청마다 파라미터만 바인딩해서 실행한다.
+ *
+ * 직렬화 결과의 ?1, ?2 ... 순서대로 constants가 쌓이는데
+ * Param 자리는 요청 값으로, 나머지 상수는 그대로 바인딩한다.*/
+public class QueryTemplate<T> {
+
+    private final String jpql;
+    private final List<Object> constants;
+    private final Expression<T> projection;
+
+    private QueryTemplate(String jpql, List<Object> constants, Expression<T> projection) {
+        this.jpql = jpql;
+        this.constants = constants;
+        this.projection = projection;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> QueryTemplate<T> compile(JPAQuery<T> query, EntityManager em) {
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(em), em);
+        serializer.serialize(query.getMetadata(), false, null);
+        return new QueryTemplate<>(serializer.toString(),
+                List.copyOf(serializer.getConstants()),
+                (Expression<T>) query.getMetadata().getProjection());
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> fetch(EntityManager em, Map<Param<?>, Object> bindings) {
+        Query query = em.createQuery(jpql);
+        for (int i = 0; i < constants.size(); i++) {
+            Object constant = constants.get(i);
+            Object value = constant instanceof Param<?> param ? bindings.get(param) : constant;
+            if (value == null) {
+                throw new IllegalArgumentException("No value bound for " + constant);
+            }
+            query.setParameter(i + 1, value);
+        }
+
+        List<?> rows = query.getResultList();
+        if (!(projection instanceof FactoryExpression<T> factory)) {
+            return (List<T>) rows;
+        }
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            result.add(factory.newInstance(row instanceof Object[] args ? args : new Object[]{row}));
+        }
+        return result;
+    }
+
+    public String getJpql() {
+        return jpql;
+    }
+}
@@ -1,14 +1,24 @@
 package study.querydsl.repository.support;
 import com.querydsl.core.types.EntityPath;
 import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.NumberPath;
 import com.querydsl.core.types.dsl.PathBuilder;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
 import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.Metamodel;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
@@ -18,7 +28,13 @@ import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 /*QueryDsl 지원 클래스 직접 생성
  * 기능 제공을 넘어 더 좋게 커스터마이징을 할 수 있다.
@@ -42,6 +58,15 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private CountQueryExecutor countQueryExecutor;
+    private CountCache countCache;
+    private RowCountEstimator rowCountEstimator;
+    private long countCeiling;
+    private BulkOperationExecutor bulkOperationExecutor;
+    private QueryMemo queryMemo;
+    private EntityPath<?> entityPath;
+    private NumberPath<Long> idPath;
+    private final Map<String, FetchPlan> fetchPlans = new ConcurrentHashMap<>();
     public Querydsl4RepositorySupport(Class<?> domainClass) { Assert.notNull(domainClass, "Domain class must not be null!");
         this.domainClass = domainClass;
     }
@@ -53,11 +78,44 @@ public abstract class Querydsl4RepositorySupport {
         /*위처럼 패스를 제대로 지정해줘야 Sort버그를 해결하는 코드이다.
         * 이걸 제대로된 클래스를 만들어줘야 동적 sort가 제대로 된다.*/
         this.entityManager = entityManager;
+        this.entityPath = path;
+        /*벌크 연산의 id 구간 청크에 쓰는 식별자 경로 (예: member.id)*/
+        this.idPath = new PathBuilder<>(path.getType(), path.getMetadata())
+                .getNumber(entityInformation.getIdAttribute().getName(), Long.class);
         this.querydsl = new Querydsl(entityManager, new PathBuilder<>(path.getType(), path.getMetadata()));
         this.queryFactory = new JPAQueryFactory(entityManager);    }
+    @Autowired
+    public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+        this.countQueryExecutor = countQueryExecutor;
+    }
+    @Autowired
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
+    }
+    @Autowired
+    public void setRowCountEstimator(RowCountEstimator rowCountEstimator) {
+        this.rowCountEstimator = rowCountEstimator;
+    }
+    @Autowired
+    public void setCountCeiling(@Value("${querydsl.paging.count-ceiling:1000}") long countCeiling) {
+        this.countCeiling = countCeiling;
+    }
+    @Autowired
+    public void setBulkOperationExecutor(BulkOperationExecutor bulkOperationExecutor) {
+        this.bulkOperationExecutor = bulkOperationExecutor;
+    }
+    @Autowired
+    public void setQueryMemo(QueryMemo queryMemo) {
+        this.queryMemo = queryMemo;
+    }
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!"); Assert.notNull(querydsl, "Querydsl must not be null!"); Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(countQueryExecutor, "CountQueryExecutor must not be null!");
+        Assert.notNull(countCache, "CountCache must not be null!");
+        Assert.notNull(rowCountEstimator, "RowCountEstimator must not be null!");
+        Assert.notNull(bulkOperationExecutor, "BulkOperationExecutor must not be null!");
+        Assert.notNull(queryMemo, "QueryMemo must not be null!");
     }
     protected JPAQueryFactory getQueryFactory() {
         return queryFactory;
@@ -65,6 +123,9 @@ public abstract class Querydsl4RepositorySupport {
     protected Querydsl getQuerydsl() {
         return querydsl;
     }
+    protected CountQueryExecutor getCountQueryExecutor() {
+        return countQueryExecutor;
+    }
     protected EntityManager getEntityManager() {
         return entityManager;
     }
@@ -74,16 +135,145 @@ public abstract class Querydsl4RepositorySupport {
     protected <T> JPAQuery<T> selectFrom(EntityPath<T> from) {
         return getQueryFactory().selectFrom(from);
     }
+
+    /*엔티티 그래프(fetch graph)로 연관관계를 같이 조회
+     * withFetchGraph(selectFrom(member), "team") -> member와 team을 조인해서 한번에 가져온다.
+     * "team.xxx"처럼 to-one을 두단계까지 지정할 수 있다.
+     * 컬렉션 경로("team.members" 등)는 IllegalArgumentException이다.
+     * 컬렉션을 조인하면 로우가 늘어나서 페이징을 메모리에서 하기 때문에 그래프에 넣지 않고
+     * 조용히 빼지도 않는다. 컬렉션은 처음 접근할 때 배치 페치(default_batch_fetch_size)로 읽힌다.*/
+    protected <T> JPAQuery<T> withFetchGraph(JPAQuery<T> query, String... attributePaths) {
+        Metamodel metamodel = getEntityManager().getMetamodel();
+        EntityGraph<?> graph = getEntityManager().createEntityGraph(domainClass);
+        for (String attributePath : attributePaths) {
+            String[] names = attributePath.split("\\.");
+            if (names.length > 2) {
+                throw new IllegalArgumentException("Fetch graph path supports up to two levels: " + attributePath);
+            }
+            Attribute<?, ?> first = metamodel.managedType(domainClass).getAttribute(names[0]);
+            if (first.isCollection()
+                    || names.length == 2 && metamodel.managedType(first.getJavaType()).getAttribute(names[1]).isCollection()) {
+                throw new IllegalArgumentException("Fetch graph path must not contain a collection: " + attributePath);
+            }
+            if (names.length == 1) {
+                graph.addAttributeNodes(names[0]);
+            } else {
+                graph.addSubgraph(names[0]).addAttributeNodes(names[1]);
+            }
+        }
+        return query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, graph);
+    }
+
+    /*이름 붙은 페치 플랜 등록 (보통 하위 리포지토리 생성자에서)
+     * registerFetchPlan(new FetchPlan("withTeam", "team"))*/
+    protected void registerFetchPlan(FetchPlan fetchPlan) {
+        fetchPlans.put(fetchPlan.getName(), fetchPlan);
+    }
+
+    /*등록된 페치 플랜을 쿼리에 적용한다.
+     * 플랜에는 to-one만 들어가서 로우 수가 늘지 않으므로
+     * applyPagination의 컨텐츠 람다 안에서 써도 DB 페이징이 그대로 유지된다.*/
+    protected <T> JPAQuery<T> withFetchPlan(JPAQuery<T> query, String fetchPlanName) {
+        FetchPlan fetchPlan = fetchPlans.get(fetchPlanName);
+        if (fetchPlan == null) {
+            throw new IllegalArgumentException("Unknown fetch plan: " + fetchPlanName);
+        }
+        return withFetchGraph(query, fetchPlan.getAttributePaths().toArray(String[]::new));
+    }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery) {
-        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory()); List<T> content = getQuerydsl().applyPagination(pageable,
-                jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable,
-                jpaQuery::fetchCount);
+        return applyPagination(pageable, PagingMode.COUNT_QUERY, contentQuery);
     }
     protected <T> Page<T> applyPagination(Pageable pageable,
                                           Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory()); List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory()); return PageableExecutionUtils.getPage(content, pageable,
-                countResult::fetchCount);     }
-}
\ No newline at end of file
+        return applyPagination(pageable, PagingMode.COUNT_QUERY, contentQuery, countQuery);
+    }
+
+    /*컨텐츠 쿼리로부터 최적화된 카운트 쿼리를 만든다.
+     * 카운트 람다를 따로 작성하지 않아도 select(member.id) + 필요한 조인만 남은 쿼리가 된다.*/
+    protected JPAQuery<Long> countQueryOf(JPAQuery<?> contentQuery) {
+        return CountQueryDerivation.derive(contentQuery, getEntityManager());
+    }
+
+    /*카운트 방식을 선택할 수 있는 페이징
+     * WINDOW_COUNT면 count(*) over()로 컨텐츠와 토탈을 쿼리 한번에 가져온다.*/
+    protected <T> Page<T> applyPagination(Pageable pageable, PagingMode mode,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
+        /*카운트 쿼리는 컨텐츠 쿼리에서 자동으로 만든다. (order by/projection/안쓰는 left join 제거)
+        * 별도 객체라서 PARALLEL_COUNT에서 두 쓰레드가 같은 쿼리 객체를 같이 쓰지도 않는다.*/
+        JPAQuery countResult = countQueryOf(jpaQuery);
+        return fetchPage(pageable, mode, jpaQuery, countResult);
+    }
+
+    protected <T> Page<T> applyPagination(Pageable pageable, PagingMode mode,
+                                          Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                          Function<JPAQueryFactory, JPAQuery> countQuery) {
+        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery countResult = countQuery.apply(getQueryFactory());
+        return fetchPage(pageable, mode, jpaContentQuery, countResult);
+    }
+
+    /*카운트는 CountCache를 거친다.
+     * 키는 카운트 쿼리를 직렬화한 JPQL + 바인딩 값 스냅샷(QueryKey)이라서
+     * 같은 조건으로 페이지만 넘기면 TTL 동안 카운트 쿼리가 다시 나가지 않는다.
+     * 메타데이터 객체를 그대로 키로 쓰면 쿼리가 바뀔 때 캐시 안의 키도 같이 바뀐다.*/
+    private <T> Page<T> fetchPage(Pageable pageable, PagingMode mode, JPAQuery<T> jpaContentQuery, JPAQuery<?> countQuery) {
+        LongSupplier count = () -> countCache.get(QueryKey.of(countQuery), countQuery::fetchCount);
+        JPAQuery<T> pagedQuery = (JPAQuery<T>) getQuerydsl().applyPagination(pageable, jpaContentQuery);
+        if (mode == PagingMode.WINDOW_COUNT) {
+            return WindowCountPagination.fetch(pagedQuery, pageable, count);
+        }
+        if (mode == PagingMode.PARALLEL_COUNT) {
+            return countQueryExecutor.fetchPage(pagedQuery::fetch, pageable, count);
+        }
+        if (mode == PagingMode.CAPPED_COUNT || mode == PagingMode.ESTIMATED_COUNT) {
+            List<T> content = fetch(pagedQuery);
+            Supplier<OptionalLong> estimate = mode == PagingMode.ESTIMATED_COUNT
+                    ? () -> rowCountEstimator.estimate(domainClass) : null;
+            return CappedCount.page(content, pageable, countQuery, countCeiling, estimate);
+        }
+        List<T> content = fetch(pagedQuery);
+        return PageableExecutionUtils.getPage(content, pageable, count);
+    }
+
+    /*트랜잭션 안에서 같은 쿼리를 두번 날리면 경고하고
+     * 읽기 전용 트랜잭션이면 첫번째 결과를 재사용한다. -> QueryMemo 참고*/
+    protected <T> List<T> fetch(JPAQuery<T> query) {
+        return queryMemo.fetch(query);
+    }
+
+    /*Slice 조회
+     * pageSize + 1개를 읽어서 다음 페이지 여부만 판단하고 카운트 쿼리는 날리지 않는다.*/
+    protected <T> Slice<T> applySlicing(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
+        JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+        JPAQuery<T> pagedQuery = (JPAQuery<T>) getQuerydsl().applyPagination(pageable, jpaQuery);
+        return SlicePagination.fetch(pagedQuery, pageable);
+    }
+
+    /*키셋 페이징
+     * offset 대신 커서(마지막 정렬키 + id) 다음부터 size개를 읽는다.
+     * 정렬은 sortKey asc, id asc로 고정되므로 contentQuery에 orderBy를 넣지 않는다.*/
+    protected <T, K extends Comparable> CursorPage<T> applyKeysetPagination(int size, String cursor,
+                                                                           ComparableExpressionBase<K> sortKey,
+                                                                           Function<String, K> keyParser,
+                                                                           NumberPath<Long> id,
+                                                                           Function<JPAQueryFactory, JPAQuery> contentQuery,
+                                                                           Function<T, KeysetCursor> cursorOf) {
+        JPAQuery<T> jpaQuery = contentQuery.apply(getQueryFactory());
+        return KeysetPagination.fetch(jpaQuery, sortKey, id, KeysetCursor.decode(cursor, keyParser), keyParser, size, cursorOf);
+    }
+
+    /*청크 단위 벌크 update
+     * 도메인 엔티티에서 where 조건에 걸리는 로우를 id 구간별로 나눠서 update한다.
+     * 예) bulkUpdate(member.age.lt(28), update -> update.set(member.username, "비회원"))
+     * 영향받은 로우 수/청크 수/걸린 시간을 BulkResult로 반환한다.*/
+    protected BulkResult bulkUpdate(Predicate where, Consumer<JPAUpdateClause> assignments) {
+        return bulkOperationExecutor.update(entityPath, idPath, where, assignments);
+    }
+
+    /*청크 단위 벌크 delete*/
+    protected BulkResult bulkDelete(Predicate where) {
+        return bulkOperationExecutor.delete(entityPath, idPath, where);
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.repository.support;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+/*DB 통계 기반 테이블 로우 수 추정
+ * count(*) 없이 DB가 들고 있는 통계 값만 읽기 때문에 테이블 크기와 관계없이 빠르다.
+ * 조건이 없는 전체 조회에서만 의미가 있다. (조건별 추정은 하지 않는다)
+ *
+ * 기본 SQL은 H2용이고 DB에 맞게 바꿔서 쓴다.
+ *  - H2: select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES where upper(TABLE_NAME) = upper(?1)
+ *  - PostgreSQL: select reltuples::bigint from pg_class where relname = lower(?1)
+ *  - MySQL: select TABLE_ROWS from information_schema.TABLES where TABLE_NAME = ?1*/
+@Component
+public class RowCountEstimator {
+
+    private final EntityManager em;
+    private final String estimateSql;
+
+    public RowCountEstimator(EntityManager em,
+                             @Value("${querydsl.paging.row-estimate-sql:select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES where upper(TABLE_NAME) = upper(?1)}")
+                             String estimateSql) {
+        this.em = em;
+        this.estimateSql = estimateSql;
+    }
+
+    public OptionalLong estimate(Class<?> entityType) {
+        List<?> result = em.createNativeQuery(estimateSql)
+                .setParameter(1, tableName(entityType))
+                .getResultList();
+        if (result.isEmpty() || result.get(0) == null) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(((Number) result.get(0)).longValue());
+    }
+
+    /*네이밍 전략이 적용된 실제 테이블명 (Member -> member)*/
+    private String tableName(Class<?> entityType) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        EntityPersister persister = emf.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType);
+        String tableName = ((AbstractEntityPersister) persister).getTableName();
+        int schemaSeparator = tableName.lastIndexOf('.');
+        return schemaSeparator < 0 ? tableName : tableName.substring(schemaSeparator + 1);
+    }
+}
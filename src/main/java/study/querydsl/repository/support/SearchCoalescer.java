@@ -0,0 +1,129 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*같은 검색 동시 요청 합치기 (single-flight)
+ * 트래픽이 몰리면 같은 조건/페이지의 검색이 동시에 여러개 들어와서
+ * 요청마다 컨텐츠 + 카운트 쿼리를 따로 날린다.
+ * 같은 키로 이미 실행 중인 검색이 있으면 새로 실행하지 않고 그 결과를 기다려서 같이 받는다.
+ * 끝난 결과는 들고 있지 않아서 캐시처럼 오래된 값을 돌려주지 않는다.
+ *
+ * - 먼저 온 요청(leader)만 DB에 가고 나머지(follower)는 leader의 결과나 예외를 그대로 받는다.
+ * - Member/Team 변경 이벤트가 오면 그 뒤에 온 요청은 진행 중인 검색에 붙지 않고 새로 실행한다.
+ * - 쓰기 트랜잭션 안에서는 합치지 않는다. (자기 변경이 보여야 하기 때문)
+ * - 읽기 전용 트랜잭션은 leader가 검색을 실행할 때만 연다.
+ *   호출하는 쪽(리포지토리 검색 메서드)에 @Transactional을 걸면
+ *   follower도 트랜잭션 커넥션을 잡은 채로 leader를 기다려서 몰릴수록 커넥션 풀이 마른다.
+ *   이미 트랜잭션 안에서 호출되면 그 트랜잭션에 참여한다.
+ *
+ * /actuator/metrics/querydsl.search.coalesced 로 합쳐진 요청 수를 확인한다.*/
+@Component
+public class SearchCoalescer implements MeterBinder {
+
+    private final boolean enabled;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SearchCoalescer(PlatformTransactionManager transactionManager,
+                           @Value("${querydsl.search-coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> search) {
+        if (!coalescable()) {
+            return inTransaction(search);
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return (T) await(running);
+        }
+
+        executions.incrementAndGet();
+        try {
+            T result = inTransaction(search);
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private <T> T inTransaction(Supplier<T> search) {
+        return readOnlyTransaction.execute(status -> search.get());
+    }
+
+    private Object await(CompletableFuture<Object> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private boolean coalescable() {
+        return enabled && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    /*이미 기다리고 있는 요청은 그대로 두고 새 요청만 새로 실행하게 한다.*/
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        inFlight.clear();
+    }
+
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.search.executions", executions, AtomicLong::get)
+                .description("Searches executed against the database by a leading request")
+                .register(registry);
+        FunctionCounter.builder("querydsl.search.coalesced", coalesced, AtomicLong::get)
+                .description("Searches that waited for an identical in-flight search instead of executing")
+                .register(registry);
+        Gauge.builder("querydsl.search.inflight", inFlight, Map::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,165 @@
+package study.querydsl.repository.support;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.EntityChangedEvent;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/*회원 검색 결과 캐시
+ * 대시보드가 같은 조건의 검색을 계속 반복해서
+ * (정규화된 조건 + 페이지)를 키로 검색 결과를 통째로 들고 있다가 그대로 돌려준다.
+ *
+ * - 크기 제한은 항목 수가 아니라 결과 로우 수 합계(max-rows)로 잡는다.
+ *   큰 결과 몇개가 메모리를 다 차지하지 않게 넘으면 오래 안 쓴 것부터 내보낸다.
+ * - 무효화는 버전 카운터로 한다.
+ *   Member/Team 변경 이벤트(벌크 연산 포함)가 오면 버전만 올리고
+ *   버전이 다른 항목은 꺼낼 때 버린다. 전체를 도는 비용이 없다.
+ *   변경 트랜잭션이 끝날 때 한번 더 올리고, 조회 도중 버전이 바뀐 결과는 넣지 않는다.
+ * - 쓰기 트랜잭션 안에서는 캐시를 거치지 않는다.
+ *   아직 flush 안된 자기 변경이 결과에 보여야 하기 때문
+ * 돌려주는 리스트/페이지는 여러 요청이 같이 쓰니 수정하면 안된다. (리스트는 불변으로 감싼다)*/
+@Component
+public class SearchResultCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long maxRows;
+    private final Map<Object, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long rows;
+
+    public SearchResultCache(@Value("${querydsl.search-cache.enabled:true}") boolean enabled,
+                             @Value("${querydsl.search-cache.ttl:30s}") Duration ttl,
+                             @Value("${querydsl.search-cache.max-rows:10000}") long maxRows) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.maxRows = maxRows;
+    }
+
+    public <T> List<T> list(Object key, Supplier<List<T>> search) {
+        return get(key, () -> List.copyOf(search.get()), List::size);
+    }
+
+    public <T> Page<T> page(Object key, Supplier<Page<T>> search) {
+        return get(key, search, Page::getNumberOfElements);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Object key, Supplier<T> search, ToIntFunction<T> resultRows) {
+        if (!cacheable()) {
+            return search.get();
+        }
+        long startVersion = version.get();
+        synchronized (entries) {
+            CachedResult entry = entries.get(key);
+            if (entry != null && entry.version == startVersion && entry.expiresAt - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            if (entry != null) {
+                rows -= entries.remove(key).weight;
+            }
+        }
+        misses.incrementAndGet();
+
+        T result = search.get();
+        long weight = resultRows.applyAsInt(result) + 1L;
+        synchronized (entries) {
+            if (version.get() == startVersion && weight <= maxRows) {
+                put(key, new CachedResult(result, weight, startVersion, System.nanoTime() + ttlNanos));
+            }
+        }
+        return result;
+    }
+
+    /*접근 순서 LinkedHashMap이라 앞쪽이 오래 안 쓴 항목이다.*/
+    private void put(Object key, CachedResult entry) {
+        CachedResult previous = entries.put(key, entry);
+        if (previous != null) {
+            rows -= previous.weight;
+        }
+        rows += entry.weight;
+        Iterator<CachedResult> eldest = entries.values().iterator();
+        while (rows > maxRows && eldest.hasNext()) {
+            rows -= eldest.next().weight;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private boolean cacheable() {
+        return enabled && (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+    }
+
+    public void invalidateAll() {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        invalidateAll();
+        TransactionCallbacks.afterCompletionOnce(this, this::invalidateAll);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRows() {
+        synchronized (entries) {
+            return rows;
+        }
+    }
+
+    /*액추에이터 /actuator/metrics/querydsl.search.cache.* 로 확인*/
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.search.cache.hits", hits, AtomicLong::get)
+                .description("Member searches answered from the result cache")
+                .register(registry);
+        FunctionCounter.builder("querydsl.search.cache.misses", misses, AtomicLong::get)
+                .description("Member searches executed against the database")
+                .register(registry);
+        FunctionCounter.builder("querydsl.search.cache.evictions", evictions, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("querydsl.search.cache.rows", this, SearchResultCache::getRows)
+                .register(registry);
+    }
+
+    private static class CachedResult {
+        private final Object value;
+        private final long weight;
+        private final long version;
+        private final long expiresAt;
+
+        private CachedResult(Object value, long weight, long version, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*Slice 조회 (limit + 1)
+ * 무한 스크롤처럼 "다음 페이지가 있나?"만 필요하면 전체 카운트는 필요 없다.
+ * pageSize + 1개를 읽어서 하나가 더 나오면 다음 페이지가 있는 것으로 보고
+ * 마지막 한건은 버린다. 카운트 쿼리는 절대 나가지 않는다.*/
+public final class SlicePagination {
+
+    private SlicePagination() {
+    }
+
+    /*pagedQuery는 offset(정렬 포함)이 이미 적용된 쿼리, limit만 pageSize + 1로 바꾼다.*/
+    public static <T> Slice<T> fetch(JPAQuery<T> pagedQuery, Pageable pageable) {
+        int pageSize = pageable.getPageSize();
+        List<T> rows = pagedQuery
+                .limit(pageSize + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > pageSize;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+}
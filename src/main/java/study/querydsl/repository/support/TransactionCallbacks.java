@@ -0,0 +1,46 @@
+package study.querydsl.repository.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*캐시 무효화용 트랜잭션 콜백
+ * 변경 이벤트는 로우마다 오기 때문에 이벤트마다 동기화를 등록하면
+ * saveAll/시드처럼 한 트랜잭션에서 N건을 저장할 때 커밋까지 N개가 쌓인다.
+ * owner별로 트랜잭션당 하나만 등록한다.
+ *
+ * 등록 여부는 리소스 대신 현재 동기화 목록에서 찾는다.
+ * REQUIRES_NEW로 안쪽 트랜잭션이 열리면 동기화 목록은 잠시 내려가지만
+ * 직접 바인딩한 리소스는 그대로 남아서 안쪽 트랜잭션이 바깥 것을 자기 것으로 보기 때문*/
+public final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    /*트랜잭션 동기화가 없으면 아무것도 하지 않는다.*/
+    public static void afterCompletionOnce(Object owner, Runnable callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof OwnedCallback registered && registered.owner == owner) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new OwnedCallback(owner, callback));
+    }
+
+    private static class OwnedCallback implements TransactionSynchronization {
+        private final Object owner;
+        private final Runnable callback;
+
+        private OwnedCallback(Object owner, Runnable callback) {
+            this.owner = owner;
+            this.callback = callback;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            callback.run();
+        }
+    }
+}
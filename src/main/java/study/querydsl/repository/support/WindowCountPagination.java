@@ -0,0 +1,59 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/*count(*) over() 윈도우 함수로 한번에 페이지 조회
+ * 윈도우 함수는 limit/offset이 적용되기 전의 전체 결과에 대해 계산되기 때문에
+ * 컨텐츠 로우마다 전체 카운트가 같이 붙어서 나온다.
+ * 그래서 컨텐츠와 카운트를 쿼리 한번(DB 왕복 1번)에 가져올 수 있다.
+ *
+ * 단, offset이 전체 개수를 넘어서 로우가 하나도 없으면 토탈을 알 수 없으므로
+ * 그때만 카운트 쿼리로 보정한다.
+ * group by / distinct가 들어간 쿼리는 윈도우가 그룹핑/중복제거 전에 계산될 수 있어서
+ * 윈도우를 붙이지 않고 기존 카운트 쿼리(fallbackCount)로 센다.*/
+public final class WindowCountPagination {
+
+    private static final NumberExpression<Long> TOTAL = Expressions.numberTemplate(Long.class, "count(*) over()");
+
+    private WindowCountPagination() {
+    }
+
+    /*pagedQuery는 offset/limit(정렬 포함)이 이미 적용된 컨텐츠 쿼리*/
+    @SuppressWarnings("unchecked")
+    public static <T> Page<T> fetch(JPAQuery<T> pagedQuery, Pageable pageable, LongSupplier fallbackCount) {
+        QueryMetadata metadata = pagedQuery.getMetadata();
+        if (metadata.isDistinct() || !metadata.getGroupBy().isEmpty()) {
+            return PageableExecutionUtils.getPage(pagedQuery.fetch(), pageable, fallbackCount);
+        }
+        Expression<T> projection = (Expression<T>) metadata.getProjection();
+        List<Tuple> rows = pagedQuery.clone()
+                .select(projection, TOTAL)
+                .fetch();
+
+        List<T> content = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            content.add(row.get(projection));
+        }
+
+        long total;
+        if (!rows.isEmpty()) {
+            total = rows.get(0).get(TOTAL);
+        } else {
+            total = pageable.getOffset() == 0 ? 0 : fallbackCount.getAsLong();
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+}
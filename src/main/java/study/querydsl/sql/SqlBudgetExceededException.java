@@ -0,0 +1,9 @@
+package study.querydsl.sql;
+
+/*요청 하나에서 실행한 SQL 문장 수가 예산을 넘었을 때 (fail-on-exceed=true)*/
+public class SqlBudgetExceededException extends RuntimeException {
+
+    public SqlBudgetExceededException(String path, long statements, long budget) {
+        super("SQL budget exceeded for " + path + ": " + statements + " statements (budget " + budget + ")");
+    }
+}
@@ -0,0 +1,42 @@
+package study.querydsl.sql;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*엔드포인트별 SQL 문장 수 예산
+ * querydsl.sql.budgets."[/v1/members]": 1
+ * 여기 등록된 경로만 통계를 모으고 응답 헤더를 붙인다.
+ * fail-on-exceed=true면 예산을 넘긴 요청을 실패시키고 (테스트용)
+ * false면 경고 로그만 남긴다. (운영용)*/
+@Slf4j
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "querydsl.sql")
+public class SqlBudgetProperties {
+
+    private Map<String, Long> budgets = new LinkedHashMap<>();
+    private boolean failOnExceed;
+
+    public boolean isTracked(String path) {
+        return budgets.containsKey(path);
+    }
+
+    /*예산을 넘으면 fail-on-exceed에 따라 예외를 던지거나 경고 로그를 남긴다.*/
+    public void check(String path, long statements) {
+        Long budget = budgets.get(path);
+        if (budget == null || statements <= budget) {
+            return;
+        }
+        if (failOnExceed) {
+            throw new SqlBudgetExceededException(path, statements, budget);
+        }
+        log.warn("SQL budget exceeded for {}: {} statements (budget {})", path, statements, budget);
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.sql;
+
+/*요청 하나 동안 실행된 SQL 통계 (문장 수, 읽은 로우 수, DB 시간)
+ * SqlStatsFilter가 요청 시작 때 쓰레드에 붙이고 끝나면 뗀다.
+ * p6spy 리스너(SqlStatsListener)가 같은 쓰레드에서 JDBC 호출마다 값을 올린다.
+ * 다른 쓰레드에서 실행되는 쿼리(PARALLEL_COUNT의 카운트 쿼리 등)는 잡히지 않는다.*/
+public class SqlStats {
+
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+    private long rows;
+    private long nanos;
+    private boolean checked;
+
+    public static SqlStats begin() {
+        SqlStats stats = new SqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    void recordStatement(long elapsedNanos) {
+        statements++;
+        nanos += elapsedNanos;
+    }
+
+    void recordRow() {
+        rows++;
+    }
+
+    /*예산 확인이 끝났다고 표시 (SqlStatsResponseAdvice)
+    * 표시가 없으면 SqlStatsFilter가 체인이 끝난 뒤 확인한다.*/
+    void markChecked() {
+        checked = true;
+    }
+
+    boolean isChecked() {
+        return checked;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*예산이 등록된 엔드포인트의 요청마다 SqlStats를 쓰레드에 붙이고
+ * 끝나면 메트릭으로 남긴다.
+ * /actuator/metrics/querydsl.sql.statements?tag=uri:/v1/members
+ * 응답 헤더와 예산 확인은 응답 바디를 쓰기 전에 해야 해서 SqlStatsResponseAdvice에서 한다.
+ * void 컨트롤러가 응답 스트림에 직접 쓰는 경우(NDJSON export)는 advice를 거치지 않으니
+ * 체인이 끝난 뒤 여기서 예산을 확인한다.
+ * 이미 응답이 나갔으면 헤더는 못 붙이고, fail-on-exceed면 예외로 요청을 실패 처리한다.*/
+@Component
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    private final SqlBudgetProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public SqlStatsFilter(SqlBudgetProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isTracked(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String uri = request.getRequestURI();
+        SqlStats stats = SqlStats.begin();
+        try {
+            filterChain.doFilter(request, response);
+            if (!stats.isChecked()) {
+                if (!response.isCommitted()) {
+                    response.setHeader("X-SQL-Statements", String.valueOf(stats.getStatements()));
+                    response.setHeader("X-SQL-Rows", String.valueOf(stats.getRows()));
+                    response.setHeader("X-SQL-Time-Ms", String.valueOf(stats.getMillis()));
+                }
+                properties.check(uri, stats.getStatements());
+            }
+        } finally {
+            SqlStats.end();
+            DistributionSummary.builder("querydsl.sql.statements").tag("uri", uri)
+                    .description("SQL statements executed per request")
+                    .register(meterRegistry).record(stats.getStatements());
+            DistributionSummary.builder("querydsl.sql.rows").tag("uri", uri)
+                    .description("Result set rows read per request")
+                    .register(meterRegistry).record(stats.getRows());
+            Timer.builder("querydsl.sql.time").tag("uri", uri)
+                    .description("Total JDBC execution time per request")
+                    .register(meterRegistry).record(stats.getNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.sql;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/*p6spy JDBC 이벤트 리스너
+ * p6spy-spring-boot-starter는 JdbcEventListener 빈을 찾아서 데이터소스 프록시에 등록해준다.
+ * execute/executeQuery/executeUpdate/executeBatch는 전부 onAfterAnyExecute로 모인다.
+ * 로우 수는 ResultSet.next()가 true를 반환한 횟수로 센다.*/
+@Component
+public class SqlStatsListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        SqlStats stats = SqlStats.current();
+        if (stats != null) {
+            stats.recordStatement(timeElapsedNanos);
+        }
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos,
+                                     boolean hasNext, SQLException e) {
+        SqlStats stats = SqlStats.current();
+        if (stats != null && hasNext) {
+            stats.recordRow();
+        }
+    }
+}
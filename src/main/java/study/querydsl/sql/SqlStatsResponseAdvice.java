@@ -0,0 +1,52 @@
+package study.querydsl.sql;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/*응답 바디를 쓰기 직전에 SQL 통계를 헤더로 붙인다.
+ * 바디를 쓰기 시작하면 응답이 커밋되어 헤더를 더 붙일 수 없기 때문
+ * 컨트롤러 실행(쿼리)은 이미 끝난 시점이라 요청의 쿼리가 전부 잡혀 있다.
+ *
+ *  X-SQL-Statements : 실행한 SQL 문장 수
+ *  X-SQL-Rows       : 읽은 로우 수
+ *  X-SQL-Time-Ms    : JDBC 실행 시간 합
+ *
+ * 예산을 넘으면 fail-on-exceed에 따라 예외를 던지거나 경고 로그를 남긴다.
+ * N+1이나 같은 쿼리를 두번 날리는 코드가 테스트에서 바로 드러난다.
+ * 응답을 직접 쓰는 엔드포인트(export)는 여기를 거치지 않아서 SqlStatsFilter가 확인한다.*/
+@RestControllerAdvice
+public class SqlStatsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    private final SqlBudgetProperties properties;
+
+    public SqlStatsResponseAdvice(SqlBudgetProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlStats stats = SqlStats.current();
+        if (stats == null) {
+            return body;
+        }
+        response.getHeaders().set("X-SQL-Statements", String.valueOf(stats.getStatements()));
+        response.getHeaders().set("X-SQL-Rows", String.valueOf(stats.getRows()));
+        response.getHeaders().set("X-SQL-Time-Ms", String.valueOf(stats.getMillis()));
+
+        stats.markChecked();
+        properties.check(request.getURI().getPath(), stats.getStatements());
+        return body;
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.config;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*주 DB(spring.datasource)와 다른 H2(메모리)를 복제본으로 붙여서
+ * 양쪽에 서로 다른 데이터를 넣고 어느 쪽에서 읽었는지로 확인한다.
+ * 복제본 스키마는 ddl-auto가 만들지 않으니 검색에 필요한 테이블만 직접 만든다.
+ * 쓴 직후에는 주 DB에서 읽으니 테스트마다 read-your-writes-window가 지나길 기다리고 시작한다.*/
+@SpringBootTest(properties = {
+        "querydsl.datasource.routing.enabled=true",
+        "querydsl.datasource.routing.read-your-writes-window=500ms",
+        "querydsl.datasource.routing.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.routing.replicas[0].username=sa"
+})
+class ReplicaRoutingTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Autowired MemberJpaRepository memberJpaRepository;
+
+    @Autowired ReplicaRoutingConfig.RoutingTargets routingTargets;
+
+    @Autowired RecentWrites recentWrites;
+
+    JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1", "sa", ""));
+    TransactionTemplate tx;
+    Long primaryMemberId;
+
+    @BeforeEach
+    public void before() throws InterruptedException {
+        tx = new TransactionTemplate(transactionManager);
+        replica.execute("create table if not exists team (team_id bigint primary key, name varchar(255))");
+        replica.execute("create table if not exists member (member_id bigint primary key, username varchar(255), age integer not null, team_id bigint)");
+        replica.update("delete from member");
+        replica.update("insert into member (member_id, username, age) values (1, 'replicaMember', 20)");
+        awaitUnpinned();
+    }
+
+    @AfterEach
+    public void after(){
+        if (primaryMemberId != null) {
+            tx.executeWithoutResult(status -> em.remove(em.find(Member.class, primaryMemberId)));
+        }
+    }
+
+    @Test
+    public void searchReadsFromReplica(){
+        long acquired = routingTargets.getReplicas().getAcquired(0);
+
+        List<MemberTeamDto> result = memberJpaRepository.search(condition("replicaMember"));
+
+        assertThat(result).extracting("username").containsExactly("replicaMember");
+        assertThat(routingTargets.getReplicas().getAcquired(0)).isGreaterThan(acquired);
+    }
+
+    @Test
+    public void writeGoesToPrimary(){
+        Member member = new Member("primaryMember", 30);
+        tx.executeWithoutResult(status -> memberJpaRepository.save(member));
+        primaryMemberId = member.getId();
+
+        Member found = tx.execute(status -> em.find(Member.class, primaryMemberId));
+        assertThat(found).isNotNull();
+        assertThat(replica.queryForObject("select count(*) from member where username = 'primaryMember'", Long.class))
+                .isZero();
+    }
+    /*저장은 쓰기 트랜잭션이라 주 DB로 가고 복제본에는 아직 없다.*/
+
+    @Test
+    public void readYourWritesAfterLocalWrite() throws InterruptedException {
+        Member member = new Member("primaryMember", 30);
+        tx.executeWithoutResult(status -> memberJpaRepository.save(member));
+        primaryMemberId = member.getId();
+        long acquired = routingTargets.getReplicas().getAcquired(0);
+        long pinned = recentWrites.getPinnedReads();
+
+        assertThat(memberJpaRepository.search(condition("primaryMember")))
+                .extracting("username").containsExactly("primaryMember");
+        assertThat(recentWrites.getPinnedReads()).isGreaterThan(pinned);
+        assertThat(routingTargets.getReplicas().getAcquired(0)).isEqualTo(acquired);
+
+        awaitUnpinned();
+
+        assertThat(memberJpaRepository.search(condition("replicaMember")))
+                .extracting("username").containsExactly("replicaMember");
+        assertThat(routingTargets.getReplicas().getAcquired(0)).isGreaterThan(acquired);
+    }
+    /*쓴 직후의 검색은 복제 전이라도 주 DB에서 방금 저장한 회원을 읽는다.
+    * 창이 지나면 다시 복제본에서 읽는다.*/
+
+    private void awaitUnpinned() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (recentWrites.isPinned() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(recentWrites.isPinned()).isFalse();
+    }
+
+    private MemberSearchCondition condition(String username) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        return condition;
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.controller;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.sql.SqlBudgetExceededException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/*요청별 SQL 통계 헤더와 예산
+ * 팀을 저장하면 팀 사전이 비워지니 첫 v1 요청은 팀 목록 조회가 같이 잡힌다.
+ * 사전을 채우고 나면 v1은 member 테이블 조회 1번만 나간다.
+ * v2는 fetchResults라 카운트 + 컨텐츠 2번인데 예산을 1로 줄여서 실패하는지 본다.
+ * export는 응답을 직접 쓰는 엔드포인트라 필터에서 확인하는지 예산 0으로 본다.*/
+@SpringBootTest(properties = {
+        "querydsl.sql.budgets[/v2/members]=1",
+        "querydsl.sql.budgets[/v1/members/export]=0"
+})
+@AutoConfigureMockMvc
+@Transactional
+class MemberControllerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired MockMvc mockMvc;
+
+    @BeforeEach
+    public void before(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void sqlStatsHeaders() throws Exception {
+        mockMvc.perform(get("/v1/members").param("teamname", "teamA"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-SQL-Statements", "2"));
+
+        mockMvc.perform(get("/v1/members").param("teamname", "teamB"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-SQL-Statements", "1"))
+                .andExpect(header().string("X-SQL-Rows", "2"))
+                .andExpect(header().exists("X-SQL-Time-Ms"));
+    }
+
+    @Test
+    public void sqlBudgetExceeded() {
+        assertThatThrownBy(() -> mockMvc.perform(get("/v2/members").param("size", "2")))
+                .hasRootCauseInstanceOf(SqlBudgetExceededException.class);
+    }
+
+    @Test
+    public void streamedExportBudgetExceeded() {
+        assertThatThrownBy(() -> mockMvc.perform(get("/v1/members/export")))
+                .isInstanceOf(SqlBudgetExceededException.class);
+    }
+
+    /*size는 최대값으로 잘리고, 나이 자리에 숫자가 아닌 커서는 400*/
+    @Test
+    public void cursorSearchValidation() throws Exception {
+        mockMvc.perform(get("/v4/members").param("size", "1000000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(100));
+
+        String brokenCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("abc:1".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(get("/v4/members").param("cursor", brokenCursor))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void untrackedEndpointHasNoHeaders() throws Exception {
+        mockMvc.perform(get("/v5/members"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-SQL-Statements"));
+    }
+}
@@ -1,6 +1,7 @@
 package study.querydsl.entity;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -51,4 +52,34 @@ class MemberTest {
         //member와 Team은 객체에서는 참조 값으로 이동하지만 DB에서는
         //외례키 FK로 연관관계를 맺게 된다.
     }
+
+    @Test
+    public void changeTeamDoesNotLoadMembers(){
+        Team teamA=new Team("TeamA");
+        Team teamB=new Team("TeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for(int i = 0; i < 100; i++){
+            em.persist(new Member("member"+i, i, teamA));
+        }
+        Member mover=new Member("mover",10,teamB);
+        em.persist(mover);
+        em.flush();
+        em.clear();
+
+        Team bigTeam = em.find(Team.class, teamA.getId());
+        Member findMover = em.find(Member.class, mover.getId());
+        Team oldTeam = findMover.getTeam();
+        findMover.changeTeam(bigTeam);
+
+        assertFalse(Hibernate.isInitialized(bigTeam.getMembers()));
+        assertFalse(Hibernate.isInitialized(oldTeam.getMembers()));
+
+        em.flush();
+        em.clear();
+        Team reloaded = em.find(Team.class, teamA.getId());
+        assertEquals(101, reloaded.getMembers().size());
+    }
+    //로딩 안된 team.members에 add하면 컬렉션을 읽지 않고 큐에 쌓아둔다.
+    //예전 팀의 members도 로딩하지 않고 외래키만 바뀐다.
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package study.querydsl.entity;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.support.BulkOperationExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QTeam.team;
+
+/*팀 2차 캐시
+ * 2차 캐시는 커밋된 값만 다른 트랜잭션에 보여주기 때문에
+ * 다른 테스트처럼 테스트 하나를 트랜잭션으로 감싸지 않고
+ * 저장/조회를 각각 커밋되는 트랜잭션으로 나눠서 실행하고 끝나면 지운다.*/
+@SpringBootTest
+class TeamCacheTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Autowired BulkOperationExecutor bulkOperationExecutor;
+
+    TransactionTemplate tx;
+    Long teamId;
+    Long memberId;
+
+    @BeforeEach
+    public void before(){
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team cacheTeam = new Team("cacheTeam");
+            Member cacheMember = new Member("cacheMember", 10, cacheTeam);
+            em.persist(cacheTeam);
+            em.persist(cacheMember);
+            em.flush();
+            teamId = cacheTeam.getId();
+            memberId = cacheMember.getId();
+        });
+    }
+
+    @AfterEach
+    public void after(){
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.id = :id").setParameter("id", memberId).executeUpdate();
+            em.createQuery("delete from Team t where t.id = :id").setParameter("id", teamId).executeUpdate();
+        });
+    }
+
+    @Test
+    public void findTeamFromCache(){
+        Statistics statistics = statistics();
+
+        String name = tx.execute(status -> em.find(Team.class, teamId).getName());
+
+        assertThat(name).isEqualTo("cacheTeam");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("team").getHitCount()).isEqualTo(1);
+    }
+    /*커밋할 때 캐시에 들어가서 다음 트랜잭션의 em.find는 DB에 가지 않는다.*/
+
+    @Test
+    public void lazyTeamFromCache(){
+        Statistics statistics = statistics();
+
+        String name = tx.execute(status -> em.find(Member.class, memberId).getTeam().getName());
+
+        assertThat(name).isEqualTo("cacheTeam");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+    /*회원 조회 1번, member.getTeam() 프록시 초기화는 캐시에서 끝난다.*/
+
+    @Test
+    public void bulkUpdateEvictsTeam(){
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId));
+
+        bulkOperationExecutor.update(team, team.id, team.id.eq(teamId),
+                update -> update.set(team.name, "renamed"));
+        String name = tx.execute(status -> em.find(Team.class, teamId).getName());
+
+        assertThat(name).isEqualTo("renamed");
+    }
+    /*벌크 update는 영속성 컨텍스트와 2차 캐시를 거치지 않지만
+    * 하이버네이트가 벌크 연산 대상인 team 리전을 비워서 바뀐 이름을 다시 읽는다.*/
+
+    private Statistics statistics() {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
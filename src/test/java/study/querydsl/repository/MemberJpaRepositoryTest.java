@@ -1,6 +1,7 @@
 package study.querydsl.repository;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,9 +11,12 @@ import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 
 @SpringBootTest
@@ -124,6 +128,151 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member3","member4");
     }
 
+    @Test
+    public void searchTemplateTest(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+
+        MemberSearchCondition teamBCondition = new MemberSearchCondition();
+        teamBCondition.setTeamname("teamB");
+        List<MemberTeamDto> teamBResult = memberJpaRepository.search(teamBCondition);
+        int shapes = MemberSearchTemplates.cachedShapes();
+
+        MemberSearchCondition teamACondition = new MemberSearchCondition();
+        teamACondition.setTeamname("teamA");
+        List<MemberTeamDto> teamAResult = memberJpaRepository.search(teamACondition);
+
+        assertThat(teamBResult).extracting("username").containsExactly("member3","member4");
+        assertThat(teamAResult).extracting("teamName").containsOnly("teamA");
+        assertThat(MemberSearchTemplates.cachedShapes()).isEqualTo(shapes);
+    }
+    /*값만 다르고 모양이 같으면 템플릿을 새로 만들지 않는다.*/
+
+    @Test
+    public void teamDictionaryTest(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+        em.flush();
+        em.clear();
+
+        assertThat(memberJpaRepository.search(teamCondition("teamB")))
+                .extracting("username", "teamName")
+                .containsExactly(tuple("member3", "teamB"), tuple("member4", "teamB"));
+        assertThat(memberJpaRepository.search(teamCondition("noTeam"))).isEmpty();
+
+        em.find(Team.class, teamB.getId()).setName("teamC");
+        em.flush();
+
+        assertThat(memberJpaRepository.search(teamCondition("teamB"))).isEmpty();
+        assertThat(memberJpaRepository.search(teamCondition("teamC")))
+                .extracting("teamName")
+                .containsExactly("teamC", "teamC");
+    }
+    /*팀 이름은 팀 사전에서 id로 바꿔서 조인 없이 거르고 teamName도 사전에서 채운다.
+    * 팀 이름이 바뀌면 사전이 비워져서 바로 새 이름으로 검색된다.*/
+
+    private MemberSearchCondition teamCondition(String teamName) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname(teamName);
+        return condition;
+    }
+
+    @Test
+    public void exportTest(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname("teamB");
+
+        List<MemberTeamDto> exported = new ArrayList<>();
+        long count = memberJpaRepository.export(condition, exported::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(exported).extracting("username").containsExactly("member3","member4");
+    }
+    /*리스트로 받지 않고 한건씩 sink로 흘려보낸다.*/
+
+    @Test
+    public void saveAllTest(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+
+        long saved = memberJpaRepository.saveAll(IntStream.range(0, 250)
+                .mapToObj(i -> {
+                    Member member = new Member("import" + i, i % 50);
+                    member.setTeam(i % 2 == 0 ? teamA : teamB);
+                    return member;
+                }), 100);
+
+        assertThat(saved).isEqualTo(250);
+        assertThat(teamA.getId()).isNotNull();
+        assertThat(em.contains(teamA)).isFalse();
+        Long count = em.createQuery("select count(m) from Member m where m.team.name = :name", Long.class)
+                .setParameter("name", "teamB")
+                .getSingleResult();
+        assertThat(count).isEqualTo(125);
+    }
+    /*100건마다 flush/clear해서 저장이 끝나면 영속성 컨텍스트에 남아있지 않다.*/
+
+    @Test
+    @Transactional(readOnly = true)
+    public void readOnlyTest(){
+        Member member = new Member("member1",10);
+        memberJpaRepository.save(member);
+        em.flush();
+        em.clear();
+
+        Member findMember = memberJpaRepository.findAll_Querydsl().get(0);
+        assertThat(em.unwrap(Session.class).isReadOnly(findMember)).isTrue();
+
+        findMember.setUsername("changed");
+        em.flush();
+        em.clear();
+
+        assertThat(em.find(Member.class, member.getId()).getUsername()).isEqualTo("member1");
+    }
+    /*읽기 전용 트랜잭션에서 조회한 엔티티는 스냅샷이 없어서 값을 바꿔도 update가 나가지 않는다.*/
+
+    @Test
+    public void readOnlyMethodInWriteTransaction(){
+        Member member = new Member("member1",10);
+        memberJpaRepository.save(member);
+        em.flush();
+        em.clear();
+
+        Member findMember = memberJpaRepository.findByUsername("member1").get(0);
+        assertThat(em.unwrap(Session.class).isReadOnly(findMember)).isFalse();
+
+        findMember.setAge(20);
+        em.flush();
+        em.clear();
+
+        assertThat(em.find(Member.class, member.getId()).getAge()).isEqualTo(20);
+    }
+    /*readOnly = true 메서드라도 쓰기 트랜잭션(테스트)에 참여하면 힌트가 붙지 않아서 수정이 반영된다.*/
+
     /*where절 같은 경우 한번에 쿼리를 알 수 있으며
     * 가끔은 빌더를 사용해야될 때가 있지만 비교적 where절이 좋다.*/
 
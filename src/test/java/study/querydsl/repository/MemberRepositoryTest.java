@@ -4,14 +4,23 @@ import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.BulkOperationExecutor;
+import study.querydsl.repository.support.BulkResult;
+import study.querydsl.repository.support.CappedPage;
+import study.querydsl.repository.support.CountCache;
+import study.querydsl.repository.support.CursorPage;
+import study.querydsl.repository.support.QueryMemo;
 
 import java.util.List;
 
@@ -27,6 +36,14 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
 
+    @Autowired CountCache countCache;
+
+    @Autowired QueryMemo queryMemo;
+
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Autowired ApplicationEventPublisher publisher;
+
     @Test
     public void basicTest(){
         Member member = new Member("member1",10);
@@ -103,6 +120,249 @@ class MemberRepositoryTest {
      * 또한 검증 데이터3개와 실제 조회 타겟인 1,2,3이 조회된 것을 볼 수 있다.
      * */
 
+    /*카운트 캐시 테스트*/
+    @Test
+    public void searchPageComplexCountCache(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1=new Member("member1",10,teamA);
+        Member member2=new Member("member2",20,teamA);
+        Member member3=new Member("member3",30,teamB);
+        Member member4=new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname("teamB");
+        MemberSearchCondition sameCondition = new MemberSearchCondition();
+        sameCondition.setTeamname(" teamB ");
+        sameCondition.setUsername("");
+
+        Page<MemberTeamDto> page1 = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        long hits = countCache.stats().getHits();
+        Page<MemberTeamDto> page2 = memberRepository.searchPageComplex(sameCondition, PageRequest.of(1, 1));
+
+        assertThat(page1.getTotalElements()).isEqualTo(2);
+        assertThat(page2.getTotalElements()).isEqualTo(2);
+        assertThat(countCache.stats().getHits()).isEqualTo(hits + 1);
+
+        em.persist(new Member("member5",50,teamB));
+        Page<MemberTeamDto> page3 = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        assertThat(page3.getTotalElements()).isEqualTo(3);
+    }
+    /*두번째 페이지는 카운트 쿼리가 나가지 않고
+    * 회원을 추가하면 캐시가 비워져서 다시 카운트 쿼리가 나간다.*/
+
+    @Test
+    public void countCacheNormalizesQuery(){
+        Team teamA=new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1",10,teamA));
+
+        MemberSearchCondition padded = new MemberSearchCondition();
+        padded.setUsername(" member1 ");
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        Page<MemberTeamDto> paddedPage = memberRepository.searchPageComplexPage(padded, PageRequest.of(1, 1));
+        Page<MemberTeamDto> page = memberRepository.searchPageComplexPage(condition, PageRequest.of(0, 1));
+
+        assertThat(paddedPage.getTotalElements()).isEqualTo(1);
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+    /*공백이 붙은 조건이 먼저 카운트를 캐싱해도 같은 키의 카운트는 정규화된 조건으로 센 값이다.
+    * 빈 두번째 페이지라서 카운트 쿼리가 나가고, 다음 첫 페이지는 꽉 차서 캐시에서 꺼낸다.*/
+
+    /*상한 카운트 페이징 테스트*/
+    @Test
+    public void searchPageCapped(){
+        Team teamA=new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 1005; i++) {
+            em.persist(new Member("member"+i,i%100,teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname("teamA");
+
+        Page<MemberTeamDto> result = memberRepository.searchPageCapped(condition, PageRequest.of(0, 10));
+        assertThat(result).isInstanceOf(CappedPage.class);
+        assertThat(((CappedPage<MemberTeamDto>) result).isTotalCapped()).isTrue();
+        assertThat(result.getTotalElements()).isEqualTo(1000);
+        assertThat(result.hasNext()).isTrue();
+
+        condition.setAgeGoe(95);
+        Page<MemberTeamDto> small = memberRepository.searchPageCapped(condition, PageRequest.of(0, 10));
+        assertThat(((CappedPage<MemberTeamDto>) small).isTotalCapped()).isFalse();
+        assertThat(small.getTotalElements()).isEqualTo(50);
+    }
+    /*카운트 쿼리 대신 limit 1001로 잘라서 읽는 걸 볼 수 있다.*/
+
+    /*윈도우 카운트 페이징 테스트*/
+    @Test
+    public void searchPageWindow(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1=new Member("member1",10,teamA);
+        Member member2=new Member("member2",20,teamA);
+        Member member3=new Member("member3",30,teamB);
+        Member member4=new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        PageRequest pageRequest = PageRequest.of(0, 3);
+
+        Page<MemberTeamDto> result = memberRepository.searchPageWindow(condition,pageRequest);
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member1","member2","member3");
+
+        Page<MemberTeamDto> empty = memberRepository.searchPageWindow(condition,PageRequest.of(5, 3));
+        assertThat(empty.getContent()).isEmpty();
+        assertThat(empty.getTotalElements()).isEqualTo(4);
+    }
+    /*첫 페이지는 카운트 쿼리 없이 select 한번으로 끝나고
+    * 범위를 넘어선 페이지만 카운트 쿼리로 보정하는 걸 볼 수 있다.*/
+
+    /*Slice 테스트*/
+    @Test
+    public void searchSlice(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1=new Member("member1",10,teamA);
+        Member member2=new Member("member2",20,teamA);
+        Member member3=new Member("member3",30,teamB);
+        Member member4=new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Slice<MemberTeamDto> first = memberRepository.searchSlice(condition, PageRequest.of(0, 3));
+        assertThat(first.getContent()).extracting("username").containsExactly("member1","member2","member3");
+        assertThat(first.hasNext()).isTrue();
+
+        Slice<MemberTeamDto> second = memberRepository.searchSlice(condition, PageRequest.of(1, 3));
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.hasNext()).isFalse();
+    }
+    /*limit 4로 한건 더 읽고 카운트 쿼리는 나가지 않는다.*/
+
+    /*키셋 페이징 테스트*/
+    @Test
+    public void searchByCursor(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1=new Member("member1",10,teamA);
+        Member member2=new Member("member2",20,teamA);
+        Member member3=new Member("member3",30,teamB);
+        Member member4=new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        CursorPage<MemberTeamDto> first = memberRepository.searchByCursor(condition, null, 3);
+        assertThat(first.getContent()).extracting("username").containsExactly("member1","member2","member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        CursorPage<MemberTeamDto> second = memberRepository.searchByCursor(condition, first.getNextCursor(), 3);
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+    /*두번째 페이지 쿼리를 보면 offset 없이
+    * age > ? or (age = ? and member_id > ?) 조건으로 시작 위치를 찾는다.*/
+
+    @Test
+    public void duplicateSearchDetected(){
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname("teamB");
+        long before = queryMemo.getDuplicates();
+
+        memberRepository.search(condition);
+        memberRepository.search(condition);
+
+        assertThat(queryMemo.getDuplicates()).isEqualTo(before + 1);
+    }
+    /*쓰기 트랜잭션(테스트)이라 두번째도 DB에 가지만 중복으로 경고가 남는다.*/
+
+    @Test
+    public void bulkAddAge(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1=new Member("member1",10,teamA);
+        Member member2=new Member("member2",20,teamA);
+        Member member3=new Member("member3",30,teamB);
+        Member member4=new Member("member4",40,teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamname("teamA");
+        BulkResult updated = memberRepository.bulkAddAge(condition, 1);
+
+        assertThat(updated.getAffectedRows()).isEqualTo(2);
+        assertThat(updated.getChunks()).isGreaterThanOrEqualTo(1);
+        assertThat(em.find(Member.class, member1.getId()).getAge()).isEqualTo(11);
+        assertThat(em.find(Member.class, member3.getId()).getAge()).isEqualTo(30);
+
+        MemberSearchCondition olderThan25 = new MemberSearchCondition();
+        olderThan25.setAgeGoe(25);
+        BulkResult deleted = memberRepository.bulkDelete(olderThan25);
+
+        assertThat(deleted.getAffectedRows()).isEqualTo(2);
+        assertThat(em.find(Member.class, member4.getId())).isNull();
+    }
+    /*persist한 회원은 아직 insert 전이지만 벌크 전에 flush되고
+    * 벌크 후에는 clear되어서 em.find가 DB에서 바뀐 값을 다시 읽어온다.*/
+
+    @Test
+    public void bulkChunksFollowData(){
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member"+i, 10, i % 2 == 0 ? teamA : teamB));
+        }
+
+        BulkOperationExecutor executor = new BulkOperationExecutor(em, transactionManager, publisher, 2);
+        QMember member = QMember.member;
+        BulkResult updated = executor.update(member, member.id, member.team.id.eq(teamA.getId()),
+                update -> update.set(member.age, 20));
+
+        assertThat(updated.getAffectedRows()).isEqualTo(5);
+        assertThat(updated.getChunks()).isEqualTo(3);
+    }
+    /*teamA 회원 id가 하나 건너 하나라 id 범위를 2씩 자르면 5번 나가지만
+    * 대상 id를 2개씩 읽어서 자르면 2 + 2 + 1 세번이면 된다.*/
+
     @Test
     public void querydslPredicateExcutorTest(){
         Team teamA=new Team("teamA");
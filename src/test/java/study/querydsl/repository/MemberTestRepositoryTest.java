@@ -0,0 +1,119 @@
+package study.querydsl.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountCache;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberTestRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired MemberTestRepository memberTestRepository;
+
+    @Autowired CountCache countCache;
+
+    @Test
+    public void batchFetchTeam(){
+        assertThat(statementsToReadTeams(5)).isEqualTo(2);
+        assertThat(statementsToReadTeams(50)).isEqualTo(2);
+    }
+    /*회원 조회 1번 + 팀 프록시 초기화 1번 (id in (...))
+    * 팀이 5개든 50개든 쿼리 수가 같다.*/
+
+    @Test
+    public void fetchGraphTeam(){
+        saveTeams(20);
+        Statistics statistics = statistics();
+
+        List<Member> members = memberTestRepository.basicSelectWithTeam();
+        members.forEach(m -> m.getTeam().getName());
+
+        assertThat(members).hasSize(40);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+    /*엔티티 그래프로 member와 team을 조인해서 한번에 가져온다.*/
+
+    @Test
+    public void batchFetchMembers(){
+        saveTeams(30);
+        Statistics statistics = statistics();
+
+        List<Team> teams = em.createQuery("select t from Team t", Team.class).getResultList();
+        teams.forEach(t -> t.getMembers().size());
+
+        assertThat(teams).hasSize(30);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+    /*team.members도 @BatchSize로 팀 여러개의 회원을 한번에 읽는다.*/
+
+    @Test
+    public void applyPaginationWithFetchPlan(){
+        saveTeams(20);
+
+        assertThat(statementsToReadPage(PageRequest.of(0, 5))).isEqualTo(2);
+        assertThat(statementsToReadPage(PageRequest.of(1, 15))).isEqualTo(2);
+    }
+    /*컨텐츠 1번(회원 + 팀 조인, limit/offset) + 카운트 1번
+    * 페이지 크기와 팀 수와 관계없이 쿼리 수가 같다.*/
+
+    private long statementsToReadPage(PageRequest pageRequest) {
+        em.clear();
+        countCache.invalidateAll();
+        Statistics statistics = statistics();
+
+        Page<Member> page = memberTestRepository.applyPagination(new MemberSearchCondition(), pageRequest);
+        page.getContent().forEach(m -> m.getTeam().getName());
+
+        assertThat(page.getTotalElements()).isEqualTo(40);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long statementsToReadTeams(int teamCount) {
+        saveTeams(teamCount);
+        Statistics statistics = statistics();
+
+        List<Member> members = memberTestRepository.basicSelect();
+        members.forEach(m -> m.getTeam().getName());
+
+        assertThat(members).hasSize(teamCount * 2);
+        long count = statistics.getPrepareStatementCount();
+        em.createQuery("delete from Member").executeUpdate();
+        em.createQuery("delete from Team").executeUpdate();
+        return count;
+    }
+
+    /*팀마다 회원 2명, 저장 후 영속성 컨텍스트를 비워서 조회시 프록시로 시작하게 한다.*/
+    private void saveTeams(int teamCount) {
+        for (int i = 0; i < teamCount; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            em.persist(new Member("member" + i + "a", i, team));
+            em.persist(new Member("member" + i + "b", i, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,69 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class CountQueryDerivationTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before(){
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,null));
+    }
+
+    @Test
+    public void unusedLeftJoinIsRemoved(){
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(member.age.goe(20))
+                .orderBy(member.username.desc());
+
+        JPAQuery<Long> countQuery = CountQueryDerivation.derive(content, em);
+
+        assertThat(countQuery.toString()).doesNotContain("join").doesNotContain("order by");
+        assertThat(countQuery.fetchCount()).isEqualTo(content.fetchCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void usedLeftJoinIsKept(){
+        JPAQuery<Member> content = queryFactory
+                .selectFrom(member)
+                .leftJoin(member.team, team)
+                .where(team.name.eq("teamA"));
+
+        JPAQuery<Long> countQuery = CountQueryDerivation.derive(content, em);
+
+        assertThat(countQuery.toString()).contains("left join");
+        assertThat(countQuery.fetchCount()).isEqualTo(2);
+    }
+    /*teamname 조건이 없으면 조인이 빠지고
+    * 조건에서 team을 쓰면 조인이 그대로 남는다.*/
+}
@@ -0,0 +1,123 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*DB 없이 트랜잭션 매니저만 흉내내서 카운트가 어느 쓰레드에서 실행되는지 확인한다.
+ * 컨텐츠가 페이지 크기만큼 차 있어야 카운트가 실행된다.*/
+class CountQueryExecutorTest {
+
+    CountQueryExecutor executor = new CountQueryExecutor(new NoOpTransactionManager(), 1, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicReference<String> countThread = new AtomicReference<>();
+
+    @AfterEach
+    public void after(){
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void countRunsOnCountThread(){
+        Page<String> page = executor.fetchPage(this::content, PageRequest.of(0, 10), this::count);
+
+        assertThat(page.getTotalElements()).isEqualTo(100);
+        assertThat(countThread.get()).startsWith("count-query-");
+        assertThat(executor.getInlineCounts()).isZero();
+    }
+
+    @Test
+    public void countFailureIsRethrown(){
+        assertThatThrownBy(() -> executor.fetchPage(this::content, PageRequest.of(0, 10), () -> {
+            throw new IllegalStateException("count failed");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("count failed");
+    }
+
+    @Test
+    public void unusedCountIsCancelled(){
+        executor.countAsync(this::blockedCount);
+        /*카운트는 대기열에서 기다린다.*/
+
+        Page<String> page = executor.fetchPage(() -> Collections.nCopies(3, "member"), PageRequest.of(0, 10), this::count);
+        release.countDown();
+        drain();
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(countThread.get()).isNull();
+    }
+
+    @Test
+    public void saturatedPoolCountsInline(){
+        executor.countAsync(this::blockedCount);
+        executor.countAsync(this::blockedCount);
+        /*쓰레드 1개는 실행 중, 대기열 1칸도 찼다.*/
+
+        Page<String> page = executor.fetchPage(this::content, PageRequest.of(0, 10), this::count);
+
+        assertThat(page.getTotalElements()).isEqualTo(100);
+        assertThat(countThread.get()).isEqualTo(Thread.currentThread().getName());
+        assertThat(executor.getInlineCounts()).isEqualTo(1);
+    }
+
+    private List<String> content() {
+        return Collections.nCopies(10, "member");
+    }
+
+    private long count() {
+        countThread.set(Thread.currentThread().getName());
+        return 100;
+    }
+
+    /*쓰레드가 1개라 마지막에 넣은 작업이 끝나면 앞의 작업도 다 지나갔다.*/
+    private void drain() {
+        while (true) {
+            try {
+                executor.countAsync(() -> 0).join();
+                return;
+            } catch (RejectedExecutionException e) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private long blockedCount() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalCountCacheTest {
+
+    LocalCountCache cache = new LocalCountCache(Duration.ofMinutes(1), 10);
+    AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    public void sameKeyFromCache(){
+        cache.get("key", this::count);
+        cache.get("key", this::count);
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(cache.stats().getHits()).isEqualTo(1);
+    }
+
+    /*무효화 뒤에 남은 옛날 버전 항목은 size에 잡히지 않는다.*/
+    @Test
+    public void staleEntriesPurgedAfterInvalidate(){
+        cache.get("a", this::count);
+        cache.get("b", this::count);
+        assertThat(cache.stats().getSize()).isEqualTo(2);
+
+        cache.invalidateAll();
+        assertThat(cache.stats().getSize()).isEqualTo(0);
+
+        cache.get("a", this::count);
+        assertThat(cache.stats().getSize()).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(3);
+    }
+
+    private long count() {
+        executions.incrementAndGet();
+        return 42L;
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*스프링 컨텍스트 없이 트랜잭션 동기화만 켜서 확인한다.*/
+class QueryMemoTest {
+
+    QueryMemo queryMemo = new QueryMemo();
+    AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    public void after(){
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void readOnlyTransactionReusesResult(){
+        begin(true);
+
+        List<String> first = queryMemo.fetch("key", "query", this::query);
+        List<String> second = queryMemo.fetch("key", "query", this::query);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(queryMemo.getDuplicates()).isEqualTo(1);
+        assertThat(queryMemo.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void writeTransactionOnlyWarns(){
+        begin(false);
+
+        queryMemo.fetch("key", "query", this::query);
+        queryMemo.fetch("key", "query", this::query);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(queryMemo.getDuplicates()).isEqualTo(1);
+        assertThat(queryMemo.getHits()).isZero();
+    }
+
+    @Test
+    public void memoEndsWithTransaction(){
+        begin(true);
+        queryMemo.fetch("key", "query", this::query);
+        after();
+
+        begin(true);
+        queryMemo.fetch("key", "query", this::query);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(queryMemo.getDuplicates()).isZero();
+    }
+
+    @Test
+    public void noTransactionNoMemo(){
+        queryMemo.fetch("key", "query", this::query);
+        queryMemo.fetch("key", "query", this::query);
+
+        assertThat(executions.get()).isEqualTo(2);
+        assertThat(queryMemo.getDuplicates()).isZero();
+    }
+
+    private void begin(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private List<String> query() {
+        executions.incrementAndGet();
+        return List.of("member1", "member2");
+    }
+}
@@ -0,0 +1,130 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*검색 하나를 래치로 붙잡아두고 같은 검색을 동시에 던져서 확인한다.*/
+class SearchCoalescerTest {
+
+    SearchCoalescer coalescer = new SearchCoalescer(new NoOpTransactionManager(), true);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    public void after(){
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void identicalSearchesShareOneExecution() throws Exception {
+        CompletableFuture<List<String>> leader = submit("key");
+        awaitUntil(() -> executions.get(), 1);
+        CompletableFuture<List<String>> follower1 = submit("key");
+        CompletableFuture<List<String>> follower2 = submit("key");
+        awaitUntil(coalescer::getCoalesced, 2);
+
+        release.countDown();
+
+        assertThat(follower1.get(5, TimeUnit.SECONDS)).isSameAs(leader.get(5, TimeUnit.SECONDS));
+        assertThat(follower2.get(5, TimeUnit.SECONDS)).isSameAs(leader.get());
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(coalescer.getExecutions()).isEqualTo(1);
+    }
+
+    @Test
+    public void differentKeysRunSeparately() throws Exception {
+        CompletableFuture<List<String>> first = submit("a");
+        CompletableFuture<List<String>> second = submit("b");
+        awaitUntil(() -> executions.get(), 2);
+
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNotSameAs(second.get(5, TimeUnit.SECONDS));
+        assertThat(coalescer.getCoalesced()).isZero();
+    }
+
+    @Test
+    public void failureIsSharedAndNotRemembered(){
+        coalescer.execute("key", () -> "first");
+        assertThatThrownBy(() -> coalescer.execute("key", () -> {
+            throw new IllegalStateException("db down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(coalescer.execute("key", () -> "again")).isEqualTo("again");
+    }
+    /*끝난 검색은 결과든 예외든 들고 있지 않는다.*/
+
+    @Test
+    public void entityChangeStartsNewFlight() throws Exception {
+        CompletableFuture<List<String>> before = submit("key");
+        awaitUntil(() -> executions.get(), 1);
+
+        coalescer.onEntityChanged(new EntityChangedEvent(Member.class));
+        CompletableFuture<List<String>> after = submit("key");
+        awaitUntil(() -> executions.get(), 2);
+
+        release.countDown();
+
+        assertThat(after.get(5, TimeUnit.SECONDS)).isNotSameAs(before.get(5, TimeUnit.SECONDS));
+        assertThat(coalescer.getCoalesced()).isZero();
+    }
+    /*변경 전에 시작된 검색 결과를 변경 후에 온 요청에 주지 않는다.*/
+
+    private CompletableFuture<List<String>> submit(String key) {
+        return CompletableFuture.supplyAsync(() -> coalescer.execute(key, this::slowSearch), executor);
+    }
+
+    private List<String> slowSearch() {
+        int execution = executions.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return List.of("member" + execution);
+    }
+
+    private void awaitUntil(LongSupplier value, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (value.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(value.getAsLong()).isEqualTo(expected);
+    }
+
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
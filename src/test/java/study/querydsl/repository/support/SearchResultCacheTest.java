@@ -0,0 +1,129 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*스프링 컨텍스트 없이 트랜잭션 동기화만 켜서 확인한다.*/
+class SearchResultCacheTest {
+
+    SearchResultCache cache = new SearchResultCache(true, Duration.ofMinutes(1), 10);
+    AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    public void after(){
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            end();
+        }
+    }
+
+    @Test
+    public void repeatedSearchFromCache(){
+        List<String> first = cache.list("key", () -> search(2));
+        List<String> second = cache.list("key", () -> search(2));
+
+        assertThat(second).isSameAs(first);
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void entityChangeInvalidates(){
+        cache.list("key", () -> search(2));
+
+        cache.onEntityChanged(new EntityChangedEvent(Member.class));
+        cache.list("key", () -> search(2));
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidatedAgainAfterWriteTransaction() throws InterruptedException {
+        begin(false);
+        cache.onEntityChanged(new EntityChangedEvent(Member.class));
+        Thread otherRequest = new Thread(() -> cache.list("key", () -> search(2)));
+        otherRequest.start();
+        otherRequest.join();
+        end();
+
+        cache.list("key", () -> search(2));
+
+        assertThat(executions.get()).isEqualTo(2);
+    }
+    /*커밋 전에 다른 요청이 예전 결과를 다시 넣었어도 트랜잭션이 끝나면 버려진다.*/
+
+    @Test
+    public void oneSynchronizationPerTransaction(){
+        begin(false);
+        for (int i = 0; i < 1000; i++) {
+            cache.onEntityChanged(new EntityChangedEvent(Member.class));
+        }
+
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).hasSize(1);
+    }
+    /*대량 저장처럼 한 트랜잭션에서 이벤트가 여러번 와도 커밋 때 비우는 콜백은 하나만 남는다.*/
+
+    @Test
+    public void writeTransactionBypassesCache(){
+        cache.list("key", () -> search(2));
+
+        begin(false);
+        cache.list("key", () -> search(2));
+        cache.list("key", () -> search(2));
+
+        assertThat(executions.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void readOnlyTransactionUsesCache(){
+        cache.list("key", () -> search(2));
+
+        begin(true);
+        cache.list("key", () -> search(2));
+
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsByRows(){
+        cache.list("a", () -> search(4));
+        cache.list("b", () -> search(4));
+        cache.list("c", () -> search(4));
+
+        assertThat(cache.getRows()).isLessThanOrEqualTo(10);
+        cache.list("c", () -> search(4));
+        cache.list("a", () -> search(4));
+
+        assertThat(executions.get()).isEqualTo(4);
+    }
+    /*결과 로우 합계가 max-rows(10)를 넘으면 오래 안 쓴 a부터 내보낸다.*/
+
+    private void begin(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private void end() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    private List<String> search(int rows) {
+        executions.incrementAndGet();
+        return Collections.nCopies(rows, "member" + executions.get());
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class WindowCountPaginationTest {
+
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+    AtomicInteger fallbackCounts = new AtomicInteger();
+
+    @BeforeEach
+    public void before(){
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA=new Team("teamA");
+        Team teamB=new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1",10,teamA));
+        em.persist(new Member("member2",20,teamA));
+        em.persist(new Member("member3",30,teamB));
+        em.persist(new Member("member4",40,teamB));
+    }
+
+    @Test
+    public void totalFromWindow(){
+        JPAQuery<Member> paged = queryFactory
+                .selectFrom(member)
+                .orderBy(member.username.asc())
+                .offset(0).limit(3);
+
+        Page<Member> page = WindowCountPagination.fetch(paged, PageRequest.of(0, 3), () -> fallback(4));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member1","member2","member3");
+        assertThat(fallbackCounts.get()).isZero();
+    }
+
+    /*팀 이름은 2개지만 중복제거 전 로우는 4개*/
+    @Test
+    public void distinctUsesCountQuery(){
+        JPAQuery<String> paged = queryFactory
+                .select(team.name).distinct()
+                .from(member)
+                .join(member.team, team)
+                .orderBy(team.name.asc())
+                .offset(0).limit(1);
+
+        Page<String> page = WindowCountPagination.fetch(paged, PageRequest.of(0, 1), () -> fallback(2));
+
+        assertThat(page.getContent()).containsExactly("teamA");
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(fallbackCounts.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void groupByUsesCountQuery(){
+        JPAQuery<Tuple> paged = queryFactory
+                .select(team.name, member.count())
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .offset(0).limit(1);
+
+        Page<Tuple> page = WindowCountPagination.fetch(paged, PageRequest.of(0, 1), () -> fallback(2));
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(fallbackCounts.get()).isEqualTo(1);
+    }
+
+    private long fallback(long total) {
+        fallbackCounts.incrementAndGet();
+        return total;
+    }
+}